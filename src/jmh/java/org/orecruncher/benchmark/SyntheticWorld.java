@@ -0,0 +1,289 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.benchmark;
+
+import com.electronwill.nightconfig.core.CommentedConfig;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.material.FluidState;
+import net.minecraft.world.phys.Vec3;
+import org.orecruncher.sndctrl.config.Config;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Random;
+
+/**
+ * In memory block world used by the benchmarks so that the sound physics can be exercised without a game client.
+ * The volume matches what is captured for an acoustic snapshot, and the content is generated from a fixed seed so
+ * that runs are comparable.
+ */
+public final class SyntheticWorld implements BlockGetter {
+
+    public enum Scene {
+        /**
+         * Grass plain with scattered trees.  Most rays escape to the sky.
+         */
+        OPEN_FIELD,
+        /**
+         * Solid stone carved with winding tunnels, some of them flooded.  Most rays bounce.
+         */
+        CAVES,
+        /**
+         * Grid of hollow buildings with glass windows separated by streets.  A mix of both.
+         */
+        CITY
+    }
+
+    // Dimensions of the generated volume in sections
+    public static final int SIZE_XZ = 9;
+    public static final int SIZE_Y = 5;
+    public static final int MIN_BUILD_HEIGHT = 0;
+    public static final int HEIGHT = 256;
+
+    private static final int BLOCKS_XZ = SIZE_XZ * 16;
+    private static final int BLOCKS_Y = SIZE_Y * 16;
+    private static final int CENTER_XZ = BLOCKS_XZ / 2;
+    private static final int GROUND = 32;
+    private static final double EYE_HEIGHT = 1.62D;
+    private static final long SEED = 0x5EEDL;
+
+    private static boolean bootstrapped;
+
+    private final LevelChunkSection[] sections = new LevelChunkSection[SIZE_XZ * SIZE_XZ * SIZE_Y];
+    private Vec3 listener = Vec3.ZERO;
+
+    private SyntheticWorld() {
+    }
+
+    /**
+     * Initializes the game registries and the mod config so that block states and config values can be used
+     * outside of the game.  Needs to be called before any world is created.
+     */
+    public static synchronized void bootstrap() {
+        if (!bootstrapped) {
+            SharedConstants.tryDetectVersion();
+            Bootstrap.bootStrap();
+            // Config values cannot be read until the spec is backed by a config.  An empty one is corrected to the
+            // defaults.
+            Config.SPEC.setConfig(CommentedConfig.inMemory());
+            bootstrapped = true;
+        }
+    }
+
+    @Nonnull
+    public static SyntheticWorld create(@Nonnull final Scene scene) {
+        bootstrap();
+        final SyntheticWorld world = new SyntheticWorld();
+        final Random random = new Random(SEED);
+        switch (scene) {
+            case OPEN_FIELD:
+                world.generateField(random);
+                break;
+            case CAVES:
+                world.generateCaves(random);
+                break;
+            case CITY:
+                world.generateCity(random);
+                break;
+        }
+        return world;
+    }
+
+    /**
+     * Eye position of a listener standing in the middle of the scene.
+     */
+    @Nonnull
+    public Vec3 getListener() {
+        return this.listener;
+    }
+
+    /**
+     * Gets the section at the specified section coordinates, or null if there is nothing in it.
+     */
+    @Nullable
+    public LevelChunkSection getSection(final int sx, final int sy, final int sz) {
+        if (sx < 0 || sx >= SIZE_XZ || sy < 0 || sy >= SIZE_Y || sz < 0 || sz >= SIZE_XZ)
+            return null;
+        return this.sections[(sy * SIZE_XZ + sz) * SIZE_XZ + sx];
+    }
+
+    @Nonnull
+    public BlockState getBlockState(final int x, final int y, final int z) {
+        final LevelChunkSection section = getSection(x >> 4, y >> 4, z >> 4);
+        if (section == null)
+            return Blocks.AIR.defaultBlockState();
+        return section.getBlockState(x & 15, y & 15, z & 15);
+    }
+
+    @Override
+    @Nonnull
+    public BlockState getBlockState(@Nonnull final BlockPos pos) {
+        return getBlockState(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    @Override
+    @Nonnull
+    public FluidState getFluidState(@Nonnull final BlockPos pos) {
+        return getBlockState(pos).getFluidState();
+    }
+
+    @Override
+    @Nullable
+    public BlockEntity getBlockEntity(@Nonnull final BlockPos pos) {
+        return null;
+    }
+
+    @Override
+    public int getHeight() {
+        return HEIGHT;
+    }
+
+    @Override
+    public int getMinBuildHeight() {
+        return MIN_BUILD_HEIGHT;
+    }
+
+    private void set(final int x, final int y, final int z, @Nonnull final BlockState state) {
+        if (x < 0 || x >= BLOCKS_XZ || y < 0 || y >= BLOCKS_Y || z < 0 || z >= BLOCKS_XZ)
+            return;
+        final int idx = ((y >> 4) * SIZE_XZ + (z >> 4)) * SIZE_XZ + (x >> 4);
+        LevelChunkSection section = this.sections[idx];
+        if (section == null)
+            this.sections[idx] = section = new LevelChunkSection(y >> 4);
+        section.setBlockState(x & 15, y & 15, z & 15, state, false);
+    }
+
+    private void fill(final int x0, final int y0, final int z0, final int x1, final int y1, final int z1, @Nonnull final BlockState state) {
+        for (int y = y0; y <= y1; y++)
+            for (int z = z0; z <= z1; z++)
+                for (int x = x0; x <= x1; x++)
+                    set(x, y, z, state);
+    }
+
+    private void ground() {
+        fill(0, 0, 0, BLOCKS_XZ - 1, GROUND - 5, BLOCKS_XZ - 1, Blocks.STONE.defaultBlockState());
+        fill(0, GROUND - 4, 0, BLOCKS_XZ - 1, GROUND - 2, BLOCKS_XZ - 1, Blocks.DIRT.defaultBlockState());
+        fill(0, GROUND - 1, 0, BLOCKS_XZ - 1, GROUND - 1, BLOCKS_XZ - 1, Blocks.GRASS_BLOCK.defaultBlockState());
+    }
+
+    private void generateField(@Nonnull final Random random) {
+        ground();
+
+        final BlockState log = Blocks.OAK_LOG.defaultBlockState();
+        final BlockState leaves = Blocks.OAK_LEAVES.defaultBlockState();
+        for (int i = 0; i < 48; i++) {
+            final int x = 2 + random.nextInt(BLOCKS_XZ - 4);
+            final int z = 2 + random.nextInt(BLOCKS_XZ - 4);
+            // Keep the listener in the clear
+            if (Math.abs(x - CENTER_XZ) < 4 && Math.abs(z - CENTER_XZ) < 4)
+                continue;
+            final int height = 4 + random.nextInt(3);
+            final int top = GROUND + height;
+            fill(x - 2, top - 2, z - 2, x + 2, top - 1, z + 2, leaves);
+            fill(x - 1, top, z - 1, x + 1, top, z + 1, leaves);
+            fill(x, GROUND, z, x, top - 1, z, log);
+        }
+
+        this.listener = new Vec3(CENTER_XZ + 0.5D, GROUND + EYE_HEIGHT, CENTER_XZ + 0.5D);
+    }
+
+    private void generateCaves(@Nonnull final Random random) {
+        fill(0, 0, 0, BLOCKS_XZ - 1, BLOCKS_Y - 1, BLOCKS_XZ - 1, Blocks.STONE.defaultBlockState());
+
+        final int centerY = BLOCKS_Y / 2;
+        carve(CENTER_XZ, centerY, CENTER_XZ, 4);
+
+        // Random walks that carve tunnels.  The first starts at the listener so that it is not sealed in.
+        for (int i = 0; i < 24; i++) {
+            double x = i == 0 ? CENTER_XZ : random.nextInt(BLOCKS_XZ);
+            double y = i == 0 ? centerY : 8 + random.nextInt(BLOCKS_Y - 16);
+            double z = i == 0 ? CENTER_XZ : random.nextInt(BLOCKS_XZ);
+            double yaw = random.nextDouble() * Math.PI * 2D;
+            double pitch = 0D;
+            for (int step = 0; step < 96; step++) {
+                carve((int) x, (int) y, (int) z, 2 + random.nextInt(2));
+                yaw += (random.nextDouble() - 0.5D) * 0.6D;
+                pitch = (pitch + (random.nextDouble() - 0.5D) * 0.3D) * 0.8D;
+                x += Math.cos(yaw) * Math.cos(pitch) * 1.5D;
+                y += Math.sin(pitch) * 1.5D;
+                z += Math.sin(yaw) * Math.cos(pitch) * 1.5D;
+            }
+        }
+
+        this.listener = new Vec3(CENTER_XZ + 0.5D, centerY + 0.5D, CENTER_XZ + 0.5D);
+    }
+
+    private void carve(final int cx, final int cy, final int cz, final int radius) {
+        // The low parts of the cave system are flooded
+        final BlockState air = Blocks.AIR.defaultBlockState();
+        final BlockState water = Blocks.WATER.defaultBlockState();
+        final int radiusSq = radius * radius;
+        for (int y = cy - radius; y <= cy + radius; y++)
+            for (int z = cz - radius; z <= cz + radius; z++)
+                for (int x = cx - radius; x <= cx + radius; x++) {
+                    final int dx = x - cx;
+                    final int dy = y - cy;
+                    final int dz = z - cz;
+                    if (dx * dx + dy * dy + dz * dz <= radiusSq)
+                        set(x, y, z, y < 20 ? water : air);
+                }
+    }
+
+    private void generateCity(@Nonnull final Random random) {
+        ground();
+
+        // Blocks of 16x16 buildings separated by 8 wide streets.  The listener stands in an intersection.
+        final BlockState wall = Blocks.STONE_BRICKS.defaultBlockState();
+        final BlockState window = Blocks.GLASS_PANE.defaultBlockState();
+        final BlockState floor = Blocks.SMOOTH_STONE.defaultBlockState();
+        final int street = 8;
+        final int lot = 24;
+        for (int bx = street; bx < BLOCKS_XZ; bx += lot)
+            for (int bz = street; bz < BLOCKS_XZ; bz += lot) {
+                final int stories = 2 + random.nextInt(10);
+                final int x1 = Math.min(bx + lot - street - 1, BLOCKS_XZ - 1);
+                final int z1 = Math.min(bz + lot - street - 1, BLOCKS_XZ - 1);
+                final int top = Math.min(GROUND + stories * 4, BLOCKS_Y - 1);
+                for (int y = GROUND; y <= top; y++) {
+                    final boolean isFloor = (y - GROUND) % 4 == 0;
+                    for (int z = bz; z <= z1; z++)
+                        for (int x = bx; x <= x1; x++) {
+                            final boolean isEdge = x == bx || x == x1 || z == bz || z == z1;
+                            final boolean isCorner = (x == bx || x == x1) && (z == bz || z == z1);
+                            if (isFloor) {
+                                set(x, y, z, isEdge ? wall : floor);
+                            } else if (isEdge) {
+                                // Windows in the middle row of each story, except at the corners
+                                final boolean isWindow = !isCorner && (y - GROUND) % 4 == 2 && ((x + z) & 1) == 0;
+                                set(x, y, z, isWindow ? window : wall);
+                            }
+                        }
+                }
+            }
+
+        this.listener = new Vec3(CENTER_XZ + street / 2 + 0.5D, GROUND + EYE_HEIGHT, CENTER_XZ + street / 2 + 0.5D);
+    }
+}
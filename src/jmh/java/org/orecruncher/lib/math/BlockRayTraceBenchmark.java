@@ -0,0 +1,95 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.lib.math;
+
+import net.minecraft.world.level.ClipContext;
+import net.minecraft.world.phys.BlockHitResult;
+import net.minecraft.world.phys.Vec3;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.orecruncher.benchmark.SyntheticWorld;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures BlockRayTrace and RayTraceIterator casting a fan of rays out from the listener.  Each operation is one
+ * full fan.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockRayTraceBenchmark {
+
+    private static final int RAYS = 64;
+    private static final double RAY_LENGTH = 32D;
+
+    @Param({"OPEN_FIELD", "CAVES", "CITY"})
+    public SyntheticWorld.Scene scene;
+
+    private BlockRayTrace colliderTrace;
+    private Vec3 origin;
+    private Vec3[] targets;
+
+    @Setup
+    public void setup() {
+        final SyntheticWorld world = SyntheticWorld.create(this.scene);
+        this.origin = world.getListener();
+        this.colliderTrace = new BlockRayTrace(world, ClipContext.Block.COLLIDER, ClipContext.Fluid.SOURCE_ONLY);
+        this.targets = fan(this.origin);
+    }
+
+    /**
+     * Points evenly spread over a sphere around the origin, like the rays cast for reverb.
+     */
+    @Nonnull
+    private static Vec3[] fan(@Nonnull final Vec3 origin) {
+        final Vec3[] result = new Vec3[RAYS];
+        final double goldenAngle = Math.PI * (3D - Math.sqrt(5D));
+        for (int i = 0; i < RAYS; i++) {
+            final double y = 1D - (i + 0.5D) * 2D / RAYS;
+            final double radius = Math.sqrt(1D - y * y);
+            final double theta = goldenAngle * i;
+            result[i] = origin.add(Math.cos(theta) * radius * RAY_LENGTH, y * RAY_LENGTH, Math.sin(theta) * radius * RAY_LENGTH);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public void trace(@Nonnull final Blackhole bh) {
+        for (final Vec3 target : this.targets) {
+            final BlockHitResult result = this.colliderTrace.trace(this.origin, target);
+            bh.consume(result);
+        }
+    }
+
+    @Benchmark
+    public void iterate(@Nonnull final Blackhole bh) {
+        for (final Vec3 target : this.targets) {
+            this.colliderTrace.start = this.origin;
+            this.colliderTrace.end = target;
+            final RayTraceIterator itr = new RayTraceIterator(this.colliderTrace);
+            while (itr.hasNext())
+                bh.consume(itr.next());
+        }
+    }
+}
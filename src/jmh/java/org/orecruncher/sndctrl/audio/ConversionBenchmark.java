@@ -0,0 +1,119 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio;
+
+import com.mojang.blaze3d.audio.SoundBuffer;
+import org.lwjgl.BufferUtils;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the stereo to mono downmix of a sound buffer.  Each operation converts one second of 44.1kHz stereo
+ * audio, about the size of a typical sound effect.  The reference is the original per sample loop, and setup makes
+ * sure the conversion still produces exactly the same output.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConversionBenchmark {
+
+    private static final float SAMPLE_RATE = 44100F;
+
+    @Param({"8", "16"})
+    public int bits;
+
+    private AudioFormat format;
+    private byte[] samples;
+    private ByteBuffer data;
+
+    @Setup
+    public void setup() {
+        final int frameSize = this.bits / 8 * 2;
+        this.format = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, SAMPLE_RATE, this.bits, 2, frameSize, SAMPLE_RATE, false);
+        this.samples = new byte[(int) SAMPLE_RATE * frameSize];
+        new Random(0x5EEDL).nextBytes(this.samples);
+        // Sound data handed over by the game is in a direct buffer
+        this.data = BufferUtils.createByteBuffer(this.samples.length).order(ByteOrder.LITTLE_ENDIAN);
+        verify();
+    }
+
+    private void verify() {
+        reset();
+        reference(this.data, this.bits, this.format.getFrameSize());
+        final byte[] expected = new byte[this.samples.length >> 1];
+        this.data.get(0, expected);
+
+        reset();
+        final SoundBuffer converted = Conversion.convert(new SoundBuffer(this.data, this.format));
+        final byte[] actual = new byte[converted.data.remaining()];
+        converted.data.get(0, actual);
+
+        if (!Arrays.equals(expected, actual))
+            throw new IllegalStateException("Conversion does not match the reference for " + this.bits + " bit samples");
+    }
+
+    /**
+     * The conversions work in place so the stereo data has to be restored before each call.
+     */
+    @Setup(Level.Invocation)
+    public void reset() {
+        this.data.clear();
+        this.data.put(this.samples);
+        this.data.flip();
+    }
+
+    @Benchmark
+    public SoundBuffer convert() {
+        return Conversion.convert(new SoundBuffer(this.data, this.format));
+    }
+
+    @Benchmark
+    public ByteBuffer reference() {
+        return reference(this.data, this.bits, this.format.getFrameSize());
+    }
+
+    /**
+     * The original conversion loop
+     */
+    private static ByteBuffer reference(final ByteBuffer source, final int bits, final int frameSize) {
+        final int sourceLength = source.limit();
+        for (int i = 0; i < sourceLength; i += frameSize) {
+            final int targetIdx = i >> 1;
+            if (bits == 8) {
+                final int c1 = source.get(i) >> 1;
+                final int c2 = source.get(i + 1) >> 1;
+                source.put(targetIdx, (byte) (c1 + c2));
+            } else {
+                final int c1 = source.getShort(i) >> 1;
+                final int c2 = source.getShort(i + 2) >> 1;
+                source.putShort(targetIdx, (short) (c1 + c2));
+            }
+        }
+        return source;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import net.minecraft.client.resources.sounds.AbstractSoundInstance;
+import net.minecraft.client.resources.sounds.Sound;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.sounds.SoundSource;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.phys.Vec3;
+import org.openjdk.jmh.annotations.*;
+import org.orecruncher.benchmark.SyntheticWorld;
+
+import javax.annotation.Nonnull;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the sound effect calculation against the synthetic scenes.  Sounds are scattered around the listener
+ * with a mix of categories so that all of the detail tiers come into play.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SoundFXBenchmark {
+
+    // Power of 2 so the next source can be picked with a mask
+    private static final int SOURCES = 64;
+    private static final double SOURCE_RANGE = 24D;
+    private static final SoundSource[] CATEGORIES = {SoundSource.BLOCKS, SoundSource.HOSTILE, SoundSource.NEUTRAL, SoundSource.AMBIENT};
+
+    @Param({"OPEN_FIELD", "CAVES", "CITY"})
+    public SyntheticWorld.Scene scene;
+
+    private WorldContext ctx;
+    private AcousticResultCache cache;
+    private ListenerRoomProbe probe;
+    private SoundFXUtils[] processors;
+    private Vec3[] positions;
+    private final float[] bounceRatio = new float[TraceDetail.FULL.getBounces()];
+    private int next;
+
+    /**
+     * Level of detail used by the raw trace benchmark
+     */
+    @State(Scope.Thread)
+    public static class Detail {
+        @Param({"FULL", "REDUCED"})
+        public TraceDetail detail;
+    }
+
+    @Setup
+    public void setup() {
+        final SyntheticWorld world = SyntheticWorld.create(this.scene);
+        this.ctx = new WorldContext(snapshot(world), world.getListener(), 0F, false);
+        this.cache = new AcousticResultCache();
+        this.probe = ListenerRoomProbe.probe(this.ctx, this.cache, null);
+
+        final Random random = new Random(0x5EEDL);
+        this.processors = new SoundFXUtils[SOURCES];
+        this.positions = new Vec3[SOURCES];
+        for (int i = 0; i < SOURCES; i++) {
+            final Vec3 pos = this.ctx.playerEyePosition.add(
+                    (random.nextDouble() * 2D - 1D) * SOURCE_RANGE,
+                    (random.nextDouble() * 2D - 1D) * SOURCE_RANGE * 0.25D,
+                    (random.nextDouble() * 2D - 1D) * SOURCE_RANGE);
+            final SourceContext source = new SourceContext();
+            source.attachSound(new BenchmarkSound(CATEGORIES[i % CATEGORIES.length], pos));
+            source.enable();
+            this.processors[i] = new SoundFXUtils(source);
+            this.positions[i] = pos;
+        }
+    }
+
+    @Nonnull
+    private static AcousticSnapshot snapshot(@Nonnull final SyntheticWorld world) {
+        final AcousticSection[] sections = new AcousticSection[SyntheticWorld.SIZE_XZ * SyntheticWorld.SIZE_XZ * SyntheticWorld.SIZE_Y];
+        int idx = 0;
+        for (int y = 0; y < SyntheticWorld.SIZE_Y; y++)
+            for (int z = 0; z < SyntheticWorld.SIZE_XZ; z++)
+                for (int x = 0; x < SyntheticWorld.SIZE_XZ; x++) {
+                    final LevelChunkSection section = world.getSection(x, y, z);
+                    sections[idx++] = section == null ? AcousticSection.EMPTY : AcousticSection.of(section);
+                }
+        return new AcousticSnapshot(0, 0, 0, SyntheticWorld.SIZE_XZ, SyntheticWorld.SIZE_Y, sections, SyntheticWorld.MIN_BUILD_HEIGHT, SyntheticWorld.HEIGHT, 1);
+    }
+
+    /**
+     * Steady state where the sounds and the listener are not moving, so most traces come from the cache.
+     */
+    @Benchmark
+    public void calculate() {
+        this.processors[this.next++ & (SOURCES - 1)].calculate(this.ctx, this.cache, this.probe);
+    }
+
+    /**
+     * Every calculation misses the cache, like when the listener is on the move.
+     */
+    @Benchmark
+    public void calculateUncached() {
+        this.cache.clear();
+        this.processors[this.next++ & (SOURCES - 1)].calculate(this.ctx, this.cache, this.probe);
+    }
+
+    /**
+     * The reverb and occlusion trace on its own.
+     */
+    @Benchmark
+    public AcousticResultCache.Result trace(@Nonnull final Detail state) {
+        return SoundFXUtils.trace(this.ctx, this.positions[this.next++ & (SOURCES - 1)], state.detail, 0F, this.bounceRatio);
+    }
+
+    /**
+     * Bare bones sound instance.  The regular one needs the sound manager of the client to resolve the sound.
+     */
+    private static final class BenchmarkSound extends AbstractSoundInstance {
+
+        BenchmarkSound(@Nonnull final SoundSource category, @Nonnull final Vec3 pos) {
+            super(new ResourceLocation("minecraft", "block.stone.hit"), category);
+            this.sound = new Sound("minecraft:block/stone/hit1", 1F, 1F, 1, Sound.Type.FILE, false, false, 16);
+            this.attenuation = Attenuation.LINEAR;
+            this.x = pos.x;
+            this.y = pos.y;
+            this.z = pos.z;
+        }
+    }
+}
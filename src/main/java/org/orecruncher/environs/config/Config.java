@@ -31,6 +31,7 @@ import org.orecruncher.dsurround.DynamicSurroundings;
 import org.orecruncher.environs.Environs;
 import org.orecruncher.environs.effects.JetEffect;
 import org.orecruncher.environs.effects.particles.RippleStyle;
+import org.orecruncher.environs.scanner.ScanSampling;
 
 import javax.annotation.Nonnull;
 import java.io.File;
@@ -151,6 +152,8 @@ public final class Config {
             public final IntValue waterfallCutoff;
             public final BooleanValue enableWaterRipples;
             public final ForgeConfigSpec.EnumValue<RippleStyle> waterRippleStyle;
+            public final ForgeConfigSpec.EnumValue<ScanSampling> nearScanSampling;
+            public final ForgeConfigSpec.EnumValue<ScanSampling> farScanSampling;
 
             Effects(@Nonnull final ForgeConfigSpec.Builder builder) {
                 builder.comment("Options for controlling various effects")
@@ -221,6 +224,18 @@ public final class Config {
                         .translation("environs.cfg.effects.WaterRippleStyle")
                         .defineEnum("Water Ripple Style", RippleStyle.PIXELATED_CIRCLE, e -> true);
 
+                this.nearScanSampling = builder
+                        .worldRestart()
+                        .comment("How blocks near the player are picked when looking for random block effects")
+                        .translation("environs.cfg.effects.NearScanSampling")
+                        .defineEnum("Near Block Scan Sampling", ScanSampling.HALTON, e -> true);
+
+                this.farScanSampling = builder
+                        .worldRestart()
+                        .comment("How blocks farther from the player are picked when looking for random block effects")
+                        .translation("environs.cfg.effects.FarScanSampling")
+                        .defineEnum("Far Block Scan Sampling", ScanSampling.HALTON_COLUMN_BIAS, e -> true);
+
                 builder.pop();
             }
 
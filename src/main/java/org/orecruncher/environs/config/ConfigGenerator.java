@@ -25,6 +25,7 @@ import net.minecraft.ChatFormatting;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import org.orecruncher.environs.effects.particles.RippleStyle;
+import org.orecruncher.environs.scanner.ScanSampling;
 import org.orecruncher.lib.config.ClothAPIFactory;
 
 import javax.annotation.Nonnull;
@@ -122,6 +123,18 @@ public class ConfigGenerator {
                         RippleStyle.class,
                         Config.CLIENT.effects.waterRippleStyle));
 
+        subCategory.add(
+                ClothAPIFactory.createEnumList(
+                        builder,
+                        ScanSampling.class,
+                        Config.CLIENT.effects.nearScanSampling));
+
+        subCategory.add(
+                ClothAPIFactory.createEnumList(
+                        builder,
+                        ScanSampling.class,
+                        Config.CLIENT.effects.farScanSampling));
+
         modCategory.add(subCategory.build());
 
         subCategory = ClothAPIFactory.createSubCategory(entryBuilder, "environs.cfg.aurora", ChatFormatting.YELLOW, false);
@@ -19,8 +19,12 @@
 package org.orecruncher.environs.handlers;
 
 import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelAccessor;
+import net.minecraft.world.level.chunk.ChunkAccess;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
+import net.minecraftforge.event.world.ChunkEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import org.orecruncher.environs.config.Config;
 import org.orecruncher.environs.scanner.*;
@@ -29,14 +33,14 @@ import org.orecruncher.lib.events.DiagnosticEvent;
 import org.orecruncher.lib.math.LoggingTimerEMA;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 @OnlyIn(Dist.CLIENT)
 class AreaBlockEffects extends HandlerBase {
 
     protected final LoggingTimerEMA blockChange = new LoggingTimerEMA("Area Block Update");
     protected ClientPlayerLocus locus;
-    protected RandomBlockEffectScanner nearEffects;
-    protected RandomBlockEffectScanner farEffects;
+    protected ScanPipeline randomEffects;
     protected AlwaysOnBlockEffectScanner alwaysOn;
 
     protected long nanos;
@@ -47,8 +51,7 @@ class AreaBlockEffects extends HandlerBase {
 
     @Override
     public void process(@Nonnull final Player player) {
-        this.nearEffects.tick();
-        this.farEffects.tick();
+        this.randomEffects.tick(player.level, CommonState.getPlayerPosition(), CommonState.getDimensionId());
         this.alwaysOn.tick();
         this.blockChange.update(this.nanos);
         this.nanos = 0;
@@ -57,16 +60,15 @@ class AreaBlockEffects extends HandlerBase {
     @Override
     public void onConnect() {
         this.locus = new ClientPlayerLocus();
-        this.nearEffects = new RandomBlockEffectScanner(this.locus, RandomBlockEffectScanner.NEAR_RANGE);
-        this.farEffects = new RandomBlockEffectScanner(this.locus, RandomBlockEffectScanner.FAR_RANGE);
+        this.randomEffects = new ScanPipeline();
         this.alwaysOn = new AlwaysOnBlockEffectScanner(this.locus, Config.CLIENT.effects.get_effectRange());
     }
 
     @Override
     public void onDisconnect() {
         this.locus = null;
-        this.nearEffects = null;
-        this.farEffects = null;
+        this.randomEffects.close();
+        this.randomEffects = null;
         this.alwaysOn = null;
     }
 
@@ -79,7 +81,26 @@ class AreaBlockEffects extends HandlerBase {
     @SubscribeEvent
     public void onBlockUpdate(@Nonnull final BlockUpdateEvent event) {
         final long start = System.nanoTime();
+        this.randomEffects.invalidate(event.getPositions());
         event.getExpandedPositions().forEach(this.alwaysOn::onBlockUpdate);
         this.nanos += System.nanoTime() - start;
     }
+
+    @SubscribeEvent
+    public void onChunkLoad(@Nonnull final ChunkEvent.Load event) {
+        chunkChanged(event.getWorld(), event.getChunk(), true);
+    }
+
+    @SubscribeEvent
+    public void onChunkUnload(@Nonnull final ChunkEvent.Unload event) {
+        chunkChanged(event.getWorld(), event.getChunk(), false);
+    }
+
+    private void chunkChanged(@Nullable final LevelAccessor world, @Nonnull final ChunkAccess chunk, final boolean loaded) {
+        if (this.alwaysOn != null && world instanceof Level && ((Level) world).isClientSide()) {
+            final long start = System.nanoTime();
+            this.alwaysOn.onChunkChanged((Level) world, chunk.getPos().x, chunk.getPos().z, loaded);
+            this.nanos += System.nanoTime() - start;
+        }
+    }
 }
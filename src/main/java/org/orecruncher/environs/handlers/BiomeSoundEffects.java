@@ -107,6 +107,13 @@ public class BiomeSoundEffects extends HandlerBase {
         // Only gather data if the player is alive. If the player is dead the biome sounds will cease playing.
         if (player.isAlive()) {
 
+            // Biomes at the edge of the scan are about to be heard, and the conditions for the sounds of the
+            // others could change at any time.
+            for (final BiomeInfo info : this.biomes.getBiomes().keySet())
+                info.prefetchSounds();
+            BiomeLibrary.PLAYER_INFO.prefetchSounds();
+            BiomeLibrary.VILLAGE_INFO.prefetchSounds();
+
             final boolean biomeSounds = doBiomeSounds();
 
             if (biomeSounds)
@@ -41,6 +41,7 @@ import org.orecruncher.lib.gui.Color;
 import org.orecruncher.lib.math.MathStuff;
 import org.orecruncher.sndctrl.api.acoustics.IAcoustic;
 import org.orecruncher.sndctrl.api.acoustics.Library;
+import org.orecruncher.sndctrl.audio.SoundPrefetcher;
 
 @OnlyIn(Dist.CLIENT)
 public final class BiomeInfo implements Comparable<BiomeInfo> {
@@ -189,6 +190,17 @@ public final class BiomeInfo implements Comparable<BiomeInfo> {
 		return results;
 	}
 
+	/**
+	 * Hints the sound prefetcher with every sound the biome can play, whether or not their conditions match at the
+	 * moment.
+	 */
+	public void prefetchSounds() {
+		for (final AcousticEntry sound : this.sounds)
+			SoundPrefetcher.hintBackground(sound.getAcoustic());
+		for (final AcousticEntry sound : this.spotSounds)
+			SoundPrefetcher.hint(sound.getAcoustic());
+	}
+
 	@Nullable
 	public IAcoustic getSpotSound(@Nonnull final Random random) {
 		if (this.spotSounds.size() == 0 || random.nextInt(this.spotSoundChance) != 0)
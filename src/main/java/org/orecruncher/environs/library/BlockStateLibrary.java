@@ -181,6 +181,8 @@ public final class BlockStateLibrary {
             BlockStateUtil.setData(Blocks.AIR.defaultBlockState(), BlockStateData.DEFAULT);
             BlockStateUtil.setData(Blocks.CAVE_AIR.defaultBlockState(), BlockStateData.DEFAULT);
             BlockStateUtil.setData(Blocks.VOID_AIR.defaultBlockState(), BlockStateData.DEFAULT);
+
+            BlockStateUtil.buildStateFilters(ForgeUtils.getBlockStates());
         }
 
         @Override
@@ -192,6 +194,7 @@ public final class BlockStateLibrary {
         public void stop() {
             registry.clear();
             ForgeUtils.getBlockStates().forEach(state -> BlockStateUtil.setData(state, null));
+            BlockStateUtil.clearStateFilters();
         }
     }
 }
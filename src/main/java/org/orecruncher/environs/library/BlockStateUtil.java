@@ -18,6 +18,7 @@
 
 package org.orecruncher.environs.library;
 
+import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
@@ -25,9 +26,18 @@ import org.orecruncher.environs.misc.IMixinBlockData;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.BitSet;
+import java.util.Collection;
 
 @OnlyIn(Dist.CLIENT)
 public final class BlockStateUtil {
+
+    // Ids, as given by Block.getId(), of the states that have effects.  Scanners use these to reject a chunk section
+    // by looking at its palette rather than at each of its blocks.
+    private static final BitSet alwaysOnStates = new BitSet();
+    private static final BitSet soundsOrEffectsStates = new BitSet();
+    private static int stateFilterGeneration;
+
     private BlockStateUtil() {
     }
 
@@ -45,4 +55,45 @@ public final class BlockStateUtil {
         ((IMixinBlockData) state).setBlockData(data);
     }
 
+    /**
+     * Ids of the block states that have always on effects.  Not to be modified.
+     */
+    @Nonnull
+    public static BitSet getAlwaysOnStates() {
+        return alwaysOnStates;
+    }
+
+    /**
+     * Ids of the block states that have random sounds or effects.  Not to be modified.
+     */
+    @Nonnull
+    public static BitSet getSoundsOrEffectsStates() {
+        return soundsOrEffectsStates;
+    }
+
+    /**
+     * Changes whenever the state id sets are rebuilt.
+     */
+    public static int getStateFilterGeneration() {
+        return stateFilterGeneration;
+    }
+
+    static void buildStateFilters(@Nonnull final Collection<BlockState> states) {
+        clearStateFilters();
+        for (final BlockState state : states) {
+            final BlockStateData data = getData(state);
+            final int id = Block.getId(state);
+            if (data.hasAlwaysOnEffects())
+                alwaysOnStates.set(id);
+            if (data.hasSoundsOrEffects())
+                soundsOrEffectsStates.set(id);
+        }
+    }
+
+    static void clearStateFilters() {
+        alwaysOnStates.clear();
+        soundsOrEffectsStates.clear();
+        stateFilterGeneration++;
+    }
+
 }
@@ -18,11 +18,15 @@
 
 package org.orecruncher.environs.scanner;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Random;
 
 import javax.annotation.Nonnull;
 
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.BlockGetter;
 import net.minecraftforge.api.distmarker.Dist;
@@ -38,10 +42,20 @@ import org.orecruncher.environs.library.BlockStateUtil;
  * The CuboidScanner tries to only scan new blocks that come into range as the
  * player moves. Once all the blocks are scanned in the region (cuboid) it will
  * stop. It will start again once the player moves location.
+ *
+ * Positions of the blocks with effects are kept in an index that survives
+ * moving around, so a scan after a teleport or respawn only has to look at
+ * sections it has not seen before.
  */
 @OnlyIn(Dist.CLIENT)
 public class AlwaysOnBlockEffectScanner extends CuboidScanner {
 
+	private final InterestIndex index = new InterestIndex(BlockStateUtil::getAlwaysOnStates,
+			BlockStateUtil::getStateFilterGeneration, this.scanFilter);
+
+	// Sections of the active cuboid that the full scan has yet to visit
+	private final LongArrayList pending = new LongArrayList();
+
 	public AlwaysOnBlockEffectScanner(@Nonnull final ScanContext locus, final int range) {
 		super(locus, "AlwaysOnBlockEffectScanner", range, 0);
 	}
@@ -51,6 +65,92 @@ public class AlwaysOnBlockEffectScanner extends CuboidScanner {
 		return BlockStateUtil.getData(state).hasAlwaysOnEffects();
 	}
 
+	@Override
+	protected BitSet getInterestingStates() {
+		return BlockStateUtil.getAlwaysOnStates();
+	}
+
+	@Override
+	protected void resetFullScan() {
+		super.resetFullScan();
+		this.pending.clear();
+		queueSections(this.activeCuboid.minimum(), this.activeCuboid.maximum());
+	}
+
+	@Override
+	protected void scan() {
+		final BlockGetter provider = this.locus.getWorld();
+		if (!(provider instanceof Level)) {
+			super.scan();
+			return;
+		}
+
+		preScan();
+		final Level level = (Level) provider;
+		final BlockPos min = this.activeCuboid.minimum();
+		final BlockPos max = this.activeCuboid.maximum();
+		int budget = this.blocksPerTick;
+		while (budget > 0 && !this.pending.isEmpty()) {
+			final long key = this.pending.removeLong(this.pending.size() - 1);
+			budget -= this.index.visitSection(level, SectionPos.x(key), SectionPos.y(key), SectionPos.z(key), min,
+					max, this.scanVisitor);
+		}
+		if (this.pending.isEmpty())
+			this.scanFinished = true;
+		postScan();
+	}
+
+	@Override
+	protected void updateScan(@Nonnull final Cuboid newVolume, @Nonnull final Cuboid oldVolume,
+			@Nonnull final Cuboid intersect) {
+		final BlockGetter provider = this.locus.getWorld();
+		if (!(provider instanceof Level)) {
+			super.updateScan(newVolume, oldVolume, intersect);
+			return;
+		}
+
+		// Notify on blocks coming into range
+		for (final BlockPos[] segment : ComplementsPointIterator.getSegments(newVolume, intersect))
+			if (segment != null)
+				this.index.visit((Level) provider, segment[0], segment[1], this.scanVisitor);
+
+		this.scanFinished = true;
+	}
+
+	@Override
+	public void onBlockUpdate(@Nonnull final BlockPos pos) {
+		final BlockGetter provider = this.locus.getWorld();
+		if (provider instanceof Level)
+			this.index.onBlockUpdate((Level) provider, pos, provider.getBlockState(pos));
+		super.onBlockUpdate(pos);
+	}
+
+	/**
+	 * Invoked when a chunk is loaded or unloaded. A chunk that arrives within
+	 * the scan area is queued to be scanned.
+	 */
+	public void onChunkChanged(@Nonnull final Level level, final int cx, final int cz, final boolean loaded) {
+		this.index.invalidateChunk(level, cx, cz);
+		if (loaded && this.activeCuboid != null && level == this.locus.getWorld()) {
+			final BlockPos min = this.activeCuboid.minimum();
+			final BlockPos max = this.activeCuboid.maximum();
+			final int x = SectionPos.sectionToBlockCoord(cx);
+			final int z = SectionPos.sectionToBlockCoord(cz);
+			if (x <= max.getX() && x + 15 >= min.getX() && z <= max.getZ() && z + 15 >= min.getZ()) {
+				queueSections(new BlockPos(Math.max(x, min.getX()), min.getY(), Math.max(z, min.getZ())),
+						new BlockPos(Math.min(x + 15, max.getX()), max.getY(), Math.min(z + 15, max.getZ())));
+				this.scanFinished = false;
+			}
+		}
+	}
+
+	private void queueSections(@Nonnull final BlockPos min, @Nonnull final BlockPos max) {
+		for (int sy = SectionPos.blockToSectionCoord(min.getY()); sy <= SectionPos.blockToSectionCoord(max.getY()); sy++)
+			for (int sz = SectionPos.blockToSectionCoord(min.getZ()); sz <= SectionPos.blockToSectionCoord(max.getZ()); sz++)
+				for (int sx = SectionPos.blockToSectionCoord(min.getX()); sx <= SectionPos.blockToSectionCoord(max.getX()); sx++)
+					this.pending.add(SectionPos.asLong(sx, sy, sz));
+	}
+
 	@Override
 	public void blockScan(@Nonnull final BlockState state, @Nonnull final BlockPos pos, @Nonnull final Random rand) {
 		final BlockGetter provider = this.locus.getWorld();
@@ -60,6 +60,22 @@ public class ComplementsPointIterator implements IPointIterator {
 		// ComplementsPointIterator(newVolume,intersect);
 		//
 
+		final BlockPos[][] bounds = getSegments(volume, intersect);
+		for (int i = 0; i < bounds.length; i++)
+			this.segments[i] = bounds[i] == null ? CuboidPointIterator.NULL_ITERATOR : new CuboidPointIterator(bounds[i]);
+
+		this.peeked = next0();
+	}
+
+	/**
+	 * Works out the corners of the (at most) 3 segments that make up the space in
+	 * volume that is not in intersect. A segment that is not needed is null. The
+	 * same assumptions apply as for the constructor.
+	 */
+	@Nonnull
+	public static BlockPos[][] getSegments(@Nonnull final Cuboid volume, @Nonnull final Cuboid intersect) {
+		final BlockPos[][] segments = new BlockPos[3][];
+
 		final BlockPos vmax = volume.maximum();
 		final BlockPos imax = intersect.maximum();
 		final BlockPos vmin = volume.minimum();
@@ -67,38 +83,32 @@ public class ComplementsPointIterator implements IPointIterator {
 
 		if (vmax.getX() != imax.getX() || vmin.getX() != imin.getX()) {
 			if (vmax.getX() > imax.getX())
-				this.segments[0] = new CuboidPointIterator(new BlockPos(imax.getX(), vmin.getY(), vmin.getZ()),
-						new BlockPos(vmax.getX(), vmax.getY(), vmax.getZ()));
+				segments[0] = new BlockPos[] { new BlockPos(imax.getX(), vmin.getY(), vmin.getZ()),
+						new BlockPos(vmax.getX(), vmax.getY(), vmax.getZ()) };
 			else
-				this.segments[0] = new CuboidPointIterator(new BlockPos(vmin.getX(), vmin.getY(), vmin.getZ()),
-						new BlockPos(imin.getX(), vmax.getY(), vmax.getZ()));
-		} else {
-			this.segments[0] = CuboidPointIterator.NULL_ITERATOR;
+				segments[0] = new BlockPos[] { new BlockPos(vmin.getX(), vmin.getY(), vmin.getZ()),
+						new BlockPos(imin.getX(), vmax.getY(), vmax.getZ()) };
 		}
 
 		if (vmax.getY() != imax.getY() || vmin.getY() != imin.getY()) {
 			if (vmax.getY() > imax.getY())
-				this.segments[1] = new CuboidPointIterator(new BlockPos(imin.getX(), imax.getY(), vmin.getZ()),
-						new BlockPos(imax.getX(), vmax.getY(), vmax.getZ()));
+				segments[1] = new BlockPos[] { new BlockPos(imin.getX(), imax.getY(), vmin.getZ()),
+						new BlockPos(imax.getX(), vmax.getY(), vmax.getZ()) };
 			else
-				this.segments[1] = new CuboidPointIterator(new BlockPos(imin.getX(), vmin.getY(), vmin.getZ()),
-						new BlockPos(imax.getX(), imin.getY(), vmax.getZ()));
-		} else {
-			this.segments[1] = CuboidPointIterator.NULL_ITERATOR;
+				segments[1] = new BlockPos[] { new BlockPos(imin.getX(), vmin.getY(), vmin.getZ()),
+						new BlockPos(imax.getX(), imin.getY(), vmax.getZ()) };
 		}
 
 		if (vmax.getZ() != imax.getZ() || vmin.getZ() != imin.getZ()) {
 			if (vmax.getZ() > imax.getZ())
-				this.segments[2] = new CuboidPointIterator(new BlockPos(imin.getX(), imin.getY(), imax.getZ()),
-						new BlockPos(imax.getX(), imax.getY(), vmax.getZ()));
+				segments[2] = new BlockPos[] { new BlockPos(imin.getX(), imin.getY(), imax.getZ()),
+						new BlockPos(imax.getX(), imax.getY(), vmax.getZ()) };
 			else
-				this.segments[2] = new CuboidPointIterator(new BlockPos(imin.getX(), imin.getY(), vmin.getZ()),
-						new BlockPos(imax.getX(), imax.getY(), imin.getZ()));
-		} else {
-			this.segments[2] = CuboidPointIterator.NULL_ITERATOR;
+				segments[2] = new BlockPos[] { new BlockPos(imin.getX(), imin.getY(), vmin.getZ()),
+						new BlockPos(imax.getX(), imax.getY(), imin.getZ()) };
 		}
 
-		this.peeked = next0();
+		return segments;
 	}
 
 	protected BlockPos next0() {
@@ -18,7 +18,9 @@
 
 package org.orecruncher.environs.scanner;
 
+import java.util.BitSet;
 import java.util.Random;
+import java.util.function.Predicate;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -30,7 +32,8 @@ import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraft.core.BlockPos;
 
 /**
- * Scans the area around the player in a continuous pattern.
+ * Scans the area around the player in a continuous pattern. The area is walked
+ * a chunk section at a time rather than block by block.
  */
 @OnlyIn(Dist.CLIENT)
 public abstract class CuboidScanner extends Scanner {
@@ -38,12 +41,23 @@ public abstract class CuboidScanner extends Scanner {
 	// Iteration variables
 	protected boolean scanFinished = false;
 	protected Cuboid activeCuboid;
-	protected CuboidPointIterator fullRange;
+	protected SectionWalker fullRange;
 
 	// State of last tick
 	protected BlockPos lastPos;
 	protected int lastReference = 0;
 
+	protected final Predicate<BlockState> scanFilter = state -> !BLOCKSTATES_TO_IGNORE.contains(state)
+			&& interestingBlock(state);
+	protected final SectionWalker.IBlockVisitor scanVisitor = (state, pos) -> {
+		if (pos.getY() > 0)
+			blockScan(state, pos, this.random);
+	};
+	protected final SectionWalker.IBlockVisitor unscanVisitor = (state, pos) -> {
+		if (pos.getY() > 0)
+			blockUnscan(state, pos, this.random);
+	};
+
 	protected CuboidScanner(@Nonnull final ScanContext locus, @Nonnull final String name, final int range,
 							final int blocksPerTick) {
 		super(locus, name, range, blocksPerTick);
@@ -85,7 +99,19 @@ public abstract class CuboidScanner extends Scanner {
 
 		final BlockPos[] points = getMinMaxPointsForVolume(this.lastPos);
 		this.activeCuboid = new Cuboid(points);
-		this.fullRange = new CuboidPointIterator(points);
+		this.fullRange = new SectionWalker(points[0], points[1]);
+	}
+
+	/**
+	 * Continues the full scan of the area, up to the number of blocks allowed
+	 * for a tick.
+	 */
+	protected void scan() {
+		preScan();
+		if (this.fullRange.walk(this.locus.getWorld(), getInterestingStates(), this.scanFilter, this.scanVisitor,
+				this.blocksPerTick))
+			this.scanFinished = true;
+		postScan();
 	}
 
 	@Override
@@ -101,12 +127,12 @@ public abstract class CuboidScanner extends Scanner {
 			// everything and restart.
 			if (this.fullRange == null || this.locus.getReference() != this.lastReference) {
 				resetFullScan();
-				super.tick();
+				scan();
 			} else if (this.lastPos.equals(playerPos)) {
 				// The player didn't move. If a scan is in progress
 				// continue.
 				if (!this.scanFinished)
-					super.tick();
+					scan();
 			} else {
 				// The player moved.
 				final Cuboid oldVolume = this.activeCuboid != null ? this.activeCuboid : getVolumeFor(this.lastPos);
@@ -119,7 +145,7 @@ public abstract class CuboidScanner extends Scanner {
 				// change to the scan area dump and restart.
 				if (intersect == null || oldVolume.volume() < (oldVolume.volume() - intersect.volume()) * 2) {
 					resetFullScan();
-					super.tick();
+					scan();
 				} else {
 
 					// Looks to be a small update, like a player walking around.
@@ -134,7 +160,7 @@ public abstract class CuboidScanner extends Scanner {
 						// old volume and once that is locked then an
 						// subsequent tick will do a delta update to get
 						// the new blocks.
-						super.tick();
+						scan();
 					}
 				}
 			}
@@ -161,59 +187,31 @@ public abstract class CuboidScanner extends Scanner {
 
 		final BlockGetter provider = this.locus.getWorld();
 
+		final BitSet states = getInterestingStates();
+
 		if (doBlockUnscan()) {
-			final ComplementsPointIterator newOutOfRange = new ComplementsPointIterator(oldVolume, intersect);
 			// Notify on the blocks going out of range
-			for (BlockPos point = newOutOfRange.next(); point != null; point = newOutOfRange.next()) {
-				if (point.getY() > 0) {
-					final BlockState state = provider.getBlockState(point);
-					if (interestingBlock(state))
-						blockUnscan(state, point, this.random);
-				}
-			}
+			for (final BlockPos[] segment : ComplementsPointIterator.getSegments(oldVolume, intersect))
+				if (segment != null)
+					new SectionWalker(segment[0], segment[1]).walk(provider, states, this.scanFilter,
+							this.unscanVisitor, Integer.MAX_VALUE);
 		}
 
 		// Notify on blocks coming into range
-		final ComplementsPointIterator newInRange = new ComplementsPointIterator(newVolume, intersect);
-		for (BlockPos point = newInRange.next(); point != null; point = newInRange.next()) {
-			if (point.getY() > 0) {
-				final BlockState state = provider.getBlockState(point);
-				if (interestingBlock(state))
-					blockScan(state, point, this.random);
-			}
-		}
+		for (final BlockPos[] segment : ComplementsPointIterator.getSegments(newVolume, intersect))
+			if (segment != null)
+				new SectionWalker(segment[0], segment[1]).walk(provider, states, this.scanFilter, this.scanVisitor,
+						Integer.MAX_VALUE);
 
 		this.scanFinished = true;
 	}
 
+	/**
+	 * Not used since the area is walked by section rather than by position.
+	 */
 	@Override
 	@Nullable
 	protected BlockPos nextPos(@Nonnull final BlockPos.MutableBlockPos workingPos, @Nonnull final Random rand) {
-
-		if (this.scanFinished)
-			return null;
-
-		int checked = 0;
-
-		BlockPos point;
-		while ((point = this.fullRange.peek()) != null) {
-
-			// Consume the point
-			this.fullRange.next();
-
-			// Has to be in valid space for it to
-			// be returned.
-			if (point.getY() > 0) {
-				return point;
-			}
-
-			// Advance our check counter and loop back
-			// to examine the next point.
-			if (++checked >= this.blocksPerTick)
-				return null;
-		}
-
-		this.scanFinished = true;
 		return null;
 	}
 
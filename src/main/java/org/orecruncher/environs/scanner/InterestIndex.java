@@ -0,0 +1,191 @@
+/*
+ *  Dynamic Surroundings: Environs
+ *  Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+
+package org.orecruncher.environs.scanner;
+
+import java.util.BitSet;
+import java.util.function.IntSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnull;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSets;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.BlockPosUtil;
+
+/**
+ * Remembers the positions of interesting blocks by chunk section so that an
+ * area can be scanned by looking up those positions rather than by going
+ * through its blocks. A section is indexed the first time it is asked about,
+ * and then kept up to date with block updates until its chunk is reloaded or
+ * unloaded. The index starts over if the world or the set of interesting
+ * states changes.
+ */
+@OnlyIn(Dist.CLIENT)
+public class InterestIndex {
+
+	private final Supplier<BitSet> states;
+	private final IntSupplier generation;
+	private final Predicate<BlockState> filter;
+
+	// Packed positions of the interesting blocks, by section
+	private final Long2ObjectOpenHashMap<LongSet> sections = new Long2ObjectOpenHashMap<>();
+	private final BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+	private Level level;
+	private int currentGeneration;
+
+	/**
+	 * @param states     Ids of the states that can be of interest, as given by
+	 *                   Block.getId()
+	 * @param generation Changes whenever the states of interest change
+	 * @param filter     Decides if a block state is of interest
+	 */
+	public InterestIndex(@Nonnull final Supplier<BitSet> states, @Nonnull final IntSupplier generation,
+			@Nonnull final Predicate<BlockState> filter) {
+		this.states = states;
+		this.generation = generation;
+		this.filter = filter;
+	}
+
+	/**
+	 * Visits the interesting blocks within the specified box.
+	 *
+	 * @param level   World the box is in
+	 * @param p1      Corner of the box
+	 * @param p2      Opposite corner of the box
+	 * @param visitor Receives the blocks of interest
+	 */
+	public void visit(@Nonnull final Level level, @Nonnull final BlockPos p1, @Nonnull final BlockPos p2,
+			@Nonnull final SectionWalker.IBlockVisitor visitor) {
+		final BlockPos min = BlockPosUtil.createMinPoint(p1, p2);
+		final BlockPos max = BlockPosUtil.createMaxPoint(p1, p2);
+		for (int sy = SectionPos.blockToSectionCoord(min.getY()); sy <= SectionPos.blockToSectionCoord(max.getY()); sy++)
+			for (int sz = SectionPos.blockToSectionCoord(min.getZ()); sz <= SectionPos.blockToSectionCoord(max.getZ()); sz++)
+				for (int sx = SectionPos.blockToSectionCoord(min.getX()); sx <= SectionPos.blockToSectionCoord(max.getX()); sx++)
+					visitSection(level, sx, sy, sz, min, max, visitor);
+	}
+
+	/**
+	 * Visits the interesting blocks of a section that are within the specified
+	 * box, indexing the section if needed. The corners of the box must be its
+	 * minimum and maximum points.
+	 *
+	 * @return Rough cost of the visit in blocks
+	 */
+	public int visitSection(@Nonnull final Level level, final int sx, final int sy, final int sz,
+			@Nonnull final BlockPos min, @Nonnull final BlockPos max,
+			@Nonnull final SectionWalker.IBlockVisitor visitor) {
+		validate(level);
+
+		int cost = 1;
+		final long key = SectionPos.asLong(sx, sy, sz);
+		LongSet positions = this.sections.get(key);
+		if (positions == null) {
+			positions = index(level, sx, sy, sz);
+			this.sections.put(key, positions);
+			cost += 4096;
+		}
+
+		for (final LongIterator itr = positions.iterator(); itr.hasNext();) {
+			this.pos.set(itr.nextLong());
+			if (BlockPosUtil.contains(this.pos, min, max)) {
+				// Block updates are delivered late so the block could have changed
+				final BlockState state = level.getBlockState(this.pos);
+				if (this.filter.test(state))
+					visitor.visit(state, this.pos);
+			}
+		}
+
+		return cost + positions.size();
+	}
+
+	/**
+	 * Updates the index for a block that has changed. Sections that have not
+	 * been indexed are left alone.
+	 */
+	public void onBlockUpdate(@Nonnull final Level level, @Nonnull final BlockPos pos,
+			@Nonnull final BlockState state) {
+		validate(level);
+
+		final long key = SectionPos.asLong(pos);
+		LongSet positions = this.sections.get(key);
+		if (positions == null)
+			return;
+
+		if (this.filter.test(state)) {
+			if (positions == LongSets.EMPTY_SET) {
+				positions = new LongOpenHashSet();
+				this.sections.put(key, positions);
+			}
+			positions.add(pos.asLong());
+		} else if (positions != LongSets.EMPTY_SET) {
+			positions.remove(pos.asLong());
+		}
+	}
+
+	/**
+	 * Drops the sections of a chunk so they are indexed again the next time
+	 * they are asked about.
+	 */
+	public void invalidateChunk(@Nonnull final Level level, final int cx, final int cz) {
+		if (level != this.level)
+			return;
+		for (int sy = level.getMinSection(); sy < level.getMaxSection(); sy++)
+			this.sections.remove(SectionPos.asLong(cx, sy, cz));
+	}
+
+	public void clear() {
+		this.sections.clear();
+		this.level = null;
+	}
+
+	private void validate(@Nonnull final Level level) {
+		final int gen = this.generation.getAsInt();
+		if (level != this.level || gen != this.currentGeneration) {
+			this.sections.clear();
+			this.level = level;
+			this.currentGeneration = gen;
+		}
+	}
+
+	@Nonnull
+	private LongSet index(@Nonnull final Level level, final int sx, final int sy, final int sz) {
+		final LongSet[] result = new LongSet[] { LongSets.EMPTY_SET };
+		final int x = SectionPos.sectionToBlockCoord(sx);
+		final int y = SectionPos.sectionToBlockCoord(sy);
+		final int z = SectionPos.sectionToBlockCoord(sz);
+		new SectionWalker(new BlockPos(x, y, z), new BlockPos(x + 15, y + 15, z + 15)).walk(level,
+				this.states.get(), this.filter, (state, pos) -> {
+					if (result[0] == LongSets.EMPTY_SET)
+						result[0] = new LongOpenHashSet();
+					result[0].add(pos.asLong());
+				}, Integer.MAX_VALUE);
+		return result[0];
+	}
+}
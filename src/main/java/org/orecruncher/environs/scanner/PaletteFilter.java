@@ -0,0 +1,89 @@
+/*
+ *  Dynamic Surroundings: Environs
+ *  Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+
+package org.orecruncher.environs.scanner;
+
+import java.util.BitSet;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.GlobalPalette;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.Palette;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.sndctrl.misc.IMixinPalettedContainer;
+
+/**
+ * Helpers for getting at chunk sections and checking their palettes against a
+ * set of block state ids. A section whose palette holds none of the states
+ * cannot have any of them in its blocks.
+ */
+@OnlyIn(Dist.CLIENT)
+final class PaletteFilter {
+
+	private PaletteFilter() {
+
+	}
+
+	/**
+	 * Gets the section at the specified section coordinates if it is loaded and
+	 * is not all air.
+	 */
+	@Nullable
+	static LevelChunkSection getSection(@Nonnull final Level level, final int sx, final int sy, final int sz) {
+		if (sy < level.getMinSection() || sy >= level.getMaxSection())
+			return null;
+		final LevelChunk chunk = level.getChunkSource().getChunkNow(sx, sz);
+		if (chunk == null)
+			return null;
+		final LevelChunkSection section = chunk.getSections()[level.getSectionIndexFromSectionY(sy)];
+		return LevelChunkSection.isEmpty(section) ? null : section;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Nonnull
+	static IMixinPalettedContainer<BlockState> getStates(@Nonnull final LevelChunkSection section) {
+		return (IMixinPalettedContainer<BlockState>) section.getStates();
+	}
+
+	/**
+	 * Determines if the palette could hold any of the specified states. The
+	 * global palette is the whole state registry so it is assumed to.
+	 *
+	 * @param palette Palette of a chunk section
+	 * @param states  Ids of the states, as given by Block.getId()
+	 * @return true if the palette holds one of the states; false otherwise
+	 */
+	static boolean mayHold(@Nonnull final Palette<BlockState> palette, @Nonnull final BitSet states) {
+		if (palette instanceof GlobalPalette)
+			return true;
+		for (int i = 0; i < palette.getSize(); i++) {
+			final BlockState state = palette.valueFor(i);
+			if (state != null && states.get(Block.getId(state)))
+				return true;
+		}
+		return false;
+	}
+}
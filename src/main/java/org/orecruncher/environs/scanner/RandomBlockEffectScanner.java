@@ -18,6 +18,7 @@
 
 package org.orecruncher.environs.scanner;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Random;
 
@@ -25,6 +26,7 @@ import javax.annotation.Nonnull;
 
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.block.Block;
 import net.minecraft.world.IWorldReader;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
@@ -33,7 +35,9 @@ import net.minecraft.core.BlockPos;
 import org.orecruncher.environs.effects.BlockEffect;
 import org.orecruncher.environs.library.BlockStateData;
 import org.orecruncher.environs.library.BlockStateUtil;
+import org.orecruncher.environs.library.WeightedAcousticEntry;
 import org.orecruncher.sndctrl.api.acoustics.IAcoustic;
+import org.orecruncher.sndctrl.audio.SoundPrefetcher;
 
 /**
  * Modeled after WorldClient::doVoidFogParticles() which handles the random
@@ -44,6 +48,10 @@ import org.orecruncher.sndctrl.api.acoustics.IAcoustic;
  * overlap with the 16 block range when generating the 32 block version, but
  * since the iteration has been reduce to 667 (from 1000 in MC 1.7.10) it should
  * compensate.
+ *
+ * The scanner only finds blocks of interest and passes them along to the sink,
+ * leaving the triggering of their effects and sounds to the receiver. This
+ * allows the scan to run off the client thread.
  */
 @OnlyIn(Dist.CLIENT)
 public class RandomBlockEffectScanner extends RandomScanner {
@@ -53,18 +61,37 @@ public class RandomBlockEffectScanner extends RandomScanner {
 	public static final int NEAR_RANGE = 16;
 	public static final int FAR_RANGE = 32;
 
-	public RandomBlockEffectScanner(@Nonnull final ScanContext locus, final int range) {
-		super(locus, "RandomBlockScanner: " + range, range, ITERATION_COUNT);
+	@Nonnull
+	private final SectionWalker.IBlockVisitor sink;
+
+	public RandomBlockEffectScanner(@Nonnull final ScanContext locus, final int range,
+			@Nonnull final SectionWalker.IBlockVisitor sink, @Nonnull final ScanSampling sampling) {
+		super(locus, "RandomBlockScanner: " + range, range, ITERATION_COUNT, sampling);
+		this.sink = sink;
 	}
 
 	@Override
 	protected boolean interestingBlock(@Nonnull final BlockState state) {
-		return BlockStateUtil.getData(state).hasSoundsOrEffects();
+		// Block data is resolved lazily so stick with the prebuilt filter when off the client thread
+		return BlockStateUtil.getSoundsOrEffectsStates().get(Block.getId(state));
+	}
+
+	@Override
+	protected BitSet getInterestingStates() {
+		return BlockStateUtil.getSoundsOrEffectsStates();
 	}
 
 	@Override
 	public void blockScan(@Nonnull final BlockState state, @Nonnull final BlockPos pos, @Nonnull final Random rand) {
-		final BlockGetter world = this.locus.getWorld();
+		this.sink.visit(state, pos);
+	}
+
+	/**
+	 * Fires off the effects and sounds of a block found by a scan. Has to be
+	 * called from the client thread.
+	 */
+	public static void trigger(@Nonnull final BlockGetter world, @Nonnull final BlockState state,
+			@Nonnull final BlockPos pos, @Nonnull final Random rand) {
 		final BlockStateData profile = BlockStateUtil.getData(state);
 		final Collection<BlockEffect> effects = profile.getEffects();
 
@@ -73,6 +100,10 @@ public class RandomBlockEffectScanner extends RandomScanner {
 				be.doEffect(world, state, pos, rand);
 		}
 
+		// Blocks in range will eventually get to play their sounds
+		for (final WeightedAcousticEntry entry : profile.getSounds())
+			SoundPrefetcher.hint(entry.getAcoustic());
+
 		final IAcoustic sound = profile.getSoundToPlay(rand);
 		if (sound != null)
 			sound.playAt(pos);
@@ -18,6 +18,7 @@
 
 package org.orecruncher.environs.scanner;
 
+import java.util.Arrays;
 import java.util.Random;
 
 import javax.annotation.Nonnull;
@@ -29,27 +30,98 @@ import org.orecruncher.lib.random.LCGRandom;
 import net.minecraft.core.BlockPos;
 
 /**
- * Serves up random blocks in an area around the player. Concentration of block
- * selections are closer to the player.
+ * Serves up random blocks in an area around the player. With TRIANGLE sampling
+ * the concentration of block selections are closer to the player. The HALTON
+ * styles walk a low discrepancy sequence over the area so that successive
+ * ticks fill in the gaps left by earlier ones rather than revisiting blocks.
+ * Column bias keeps a running estimate, per section column, of how often
+ * samples land in sections that could hold something of interest and skips
+ * over columns that rarely do.
  */
 @OnlyIn(Dist.CLIENT)
 public abstract class RandomScanner extends Scanner {
 
+	// Number of sequence entries used before starting over with a new shift
+	private static final int HALTON_PERIOD = 1 << 18;
+	// Draws made looking for an accepted column before taking what was found
+	private static final int MAX_COLUMN_ATTEMPTS = 4;
+	// Lowest acceptance weight of a column, out of 256, so that changes get noticed
+	private static final int MIN_COLUMN_WEIGHT = 32;
+	// Weights are tracked for a 16x16 grid of section columns that wraps around
+	private static final int COLUMN_GRID_MASK = 15;
+
 	private final LCGRandom lcg = new LCGRandom();
+	private final ScanSampling sampling;
+	private final byte[] columnWeights;
 
 	private int playerX;
 	private int playerY;
 	private int playerZ;
 
+	private int haltonIndex;
+	private double shiftX;
+	private double shiftY;
+	private double shiftZ;
+
 	public RandomScanner(@Nonnull final ScanContext locus, @Nonnull final String name, final int range,
                          final int blocksPerTick) {
+		this(locus, name, range, blocksPerTick, ScanSampling.TRIANGLE);
+	}
+
+	public RandomScanner(@Nonnull final ScanContext locus, @Nonnull final String name, final int range,
+			final int blocksPerTick, @Nonnull final ScanSampling sampling) {
 		super(locus, name, range, blocksPerTick);
+		this.sampling = sampling;
+		if (sampling == ScanSampling.HALTON_COLUMN_BIAS) {
+			this.columnWeights = new byte[(COLUMN_GRID_MASK + 1) * (COLUMN_GRID_MASK + 1)];
+			Arrays.fill(this.columnWeights, (byte) 255);
+		} else {
+			this.columnWeights = null;
+		}
 	}
 
 	private int randomRange(final int range) {
 		return this.lcg.nextInt(range) - this.lcg.nextInt(range);
 	}
 
+	// Maps a sequence value onto the same span randomRange() covers
+	private static int sequenceRange(final double value, final double shift, final int range) {
+		double v = value + shift;
+		if (v >= 1D)
+			v -= 1D;
+		return (int) (v * (range * 2 - 1)) - (range - 1);
+	}
+
+	private static double radicalInverse(int index, final int base) {
+		final double inv = 1D / base;
+		double f = inv;
+		double result = 0;
+		while (index > 0) {
+			result += f * (index % base);
+			index /= base;
+			f *= inv;
+		}
+		return result;
+	}
+
+	private static int columnIndex(final int x, final int z) {
+		return (((x >> 4) & COLUMN_GRID_MASK) << 4) | ((z >> 4) & COLUMN_GRID_MASK);
+	}
+
+	private boolean acceptColumn(final int x, final int z) {
+		final int weight = this.columnWeights[columnIndex(x, z)] & 0xFF;
+		return this.lcg.nextInt(256) < Math.max(weight, MIN_COLUMN_WEIGHT);
+	}
+
+	@Override
+	protected void onSample(@Nonnull final BlockPos pos, final boolean mayHold) {
+		if (this.columnWeights != null) {
+			final int idx = columnIndex(pos.getX(), pos.getZ());
+			final int weight = this.columnWeights[idx] & 0xFF;
+			this.columnWeights[idx] = (byte) (weight + (((mayHold ? 255 : 0) - weight) >> 3));
+		}
+	}
+
 	@Override
 	public void preScan() {
 		final BlockPos pos = this.locus.getCenter();
@@ -61,8 +133,29 @@ public abstract class RandomScanner extends Scanner {
 	@Override
 	@Nonnull
 	protected BlockPos nextPos(@Nonnull final BlockPos.MutableBlockPos workingPos, @Nonnull final Random rand) {
-		return workingPos.set(this.playerX + randomRange(this.xRange), this.playerY + randomRange(this.yRange),
-				this.playerZ + randomRange(this.zRange));
+		if (this.sampling == ScanSampling.TRIANGLE)
+			return workingPos.set(this.playerX + randomRange(this.xRange), this.playerY + randomRange(this.yRange),
+					this.playerZ + randomRange(this.zRange));
+
+		int x;
+		int y;
+		int z;
+		int attempts = 0;
+		do {
+			if (this.haltonIndex == 0 || this.haltonIndex >= HALTON_PERIOD) {
+				// Index 0 is the origin in every base so start past it
+				this.haltonIndex = 1;
+				this.shiftX = rand.nextDouble();
+				this.shiftY = rand.nextDouble();
+				this.shiftZ = rand.nextDouble();
+			}
+			final int index = this.haltonIndex++;
+			x = this.playerX + sequenceRange(radicalInverse(index, 2), this.shiftX, this.xRange);
+			y = this.playerY + sequenceRange(radicalInverse(index, 3), this.shiftY, this.yRange);
+			z = this.playerZ + sequenceRange(radicalInverse(index, 5), this.shiftZ, this.zRange);
+		} while (this.columnWeights != null && ++attempts < MAX_COLUMN_ATTEMPTS && !acceptColumn(x, z));
+
+		return workingPos.set(x, y, z);
 	}
 
 }
@@ -0,0 +1,155 @@
+/*
+ *  Dynamic Surroundings: Environs
+ *  Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+
+package org.orecruncher.environs.scanner;
+
+import java.util.Collection;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.environs.Environs;
+import org.orecruncher.environs.config.Config;
+import org.orecruncher.lib.Singleton;
+import org.orecruncher.lib.logging.IModLog;
+import org.orecruncher.lib.random.XorShiftRandom;
+
+/**
+ * Runs the near and far random block scans on a worker thread. Each tick the
+ * client thread captures a snapshot of the area around the player and hands it
+ * to the worker, which samples the snapshot and queues up the interesting
+ * blocks it finds. The queued blocks are triggered back on the client thread
+ * the following tick since effect conditions and sound play have to happen
+ * there.
+ */
+@OnlyIn(Dist.CLIENT)
+public final class ScanPipeline {
+
+	private static final IModLog LOGGER = Environs.LOGGER.createChild(ScanPipeline.class);
+
+	private static final Singleton<ExecutorService> executor = new Singleton<>(() -> Executors.newSingleThreadExecutor(r -> {
+		final Thread thread = new Thread(r, "Environs Scan Worker");
+		thread.setDaemon(true);
+		return thread;
+	}));
+
+	private final ScanSnapshotBuilder builder = new ScanSnapshotBuilder(RandomBlockEffectScanner.FAR_RANGE);
+	private final Queue<Trigger> triggers = new ConcurrentLinkedQueue<>();
+	private final Random random = new XorShiftRandom();
+	private final RandomBlockEffectScanner nearEffects;
+	private final RandomBlockEffectScanner farEffects;
+
+	// Only touched by the worker thread while a scan is running
+	private ScanSnapshot current;
+	private Future<?> pending;
+
+	public ScanPipeline() {
+		final ScanContext context = new ScanContext(
+				() -> this.current,
+				() -> this.current.getCenter(),
+				() -> LOGGER,
+				() -> this.current.getReference()
+		);
+		this.nearEffects = new RandomBlockEffectScanner(context, RandomBlockEffectScanner.NEAR_RANGE, this::offer,
+				Config.CLIENT.effects.nearScanSampling.get());
+		this.farEffects = new RandomBlockEffectScanner(context, RandomBlockEffectScanner.FAR_RANGE, this::offer,
+				Config.CLIENT.effects.farScanSampling.get());
+	}
+
+	/**
+	 * Triggers the blocks found by the last scan and starts the next one if the
+	 * worker is idle. Called from the client thread.
+	 *
+	 * @param world     The world being scanned
+	 * @param center    The center of the scan, usually the player position
+	 * @param reference Reference of the world being scanned
+	 */
+	public void tick(@Nonnull final Level world, @Nonnull final BlockPos center, final int reference) {
+		Trigger trigger;
+		while ((trigger = this.triggers.poll()) != null) {
+			// The snapshot is a tick old so make sure the block is still there
+			if (trigger.reference == reference && world.getBlockState(trigger.pos) == trigger.state)
+				RandomBlockEffectScanner.trigger(world, trigger.state, trigger.pos, this.random);
+		}
+
+		if (this.pending == null || this.pending.isDone()) {
+			final ScanSnapshot snapshot = this.builder.capture(world, center, reference);
+			this.pending = executor.get().submit(() -> scan(snapshot));
+		}
+	}
+
+	/**
+	 * Flags the sections containing the specified block positions for recapture.
+	 * Called from the client thread.
+	 */
+	public void invalidate(@Nonnull final Collection<BlockPos> positions) {
+		this.builder.invalidate(positions);
+	}
+
+	/**
+	 * Stops any scan that has not started and releases cached data. Called from
+	 * the client thread.
+	 */
+	public void close() {
+		if (this.pending != null) {
+			this.pending.cancel(false);
+			this.pending = null;
+		}
+		this.builder.clear();
+		this.triggers.clear();
+	}
+
+	private void scan(@Nonnull final ScanSnapshot snapshot) {
+		try {
+			this.current = snapshot;
+			this.nearEffects.tick();
+			this.farEffects.tick();
+		} catch (@Nonnull final Throwable t) {
+			LOGGER.error(t, "Error scanning for block effects");
+		} finally {
+			this.current = null;
+		}
+	}
+
+	private void offer(@Nonnull final BlockState state, @Nonnull final BlockPos pos) {
+		this.triggers.add(new Trigger(state, pos.immutable(), this.current.getReference()));
+	}
+
+	private static final class Trigger {
+		final BlockState state;
+		final BlockPos pos;
+		final int reference;
+
+		Trigger(@Nonnull final BlockState state, @Nonnull final BlockPos pos, final int reference) {
+			this.state = state;
+			this.pos = pos;
+			this.reference = reference;
+		}
+	}
+}
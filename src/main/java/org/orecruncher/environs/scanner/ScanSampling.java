@@ -0,0 +1,47 @@
+/*
+ *  Dynamic Surroundings: Environs
+ *  Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+
+package org.orecruncher.environs.scanner;
+
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+/**
+ * How a RandomScanner picks the blocks it looks at.
+ */
+@OnlyIn(Dist.CLIENT)
+public enum ScanSampling {
+
+	/**
+	 * Difference of two random numbers per axis. Concentrates samples near the
+	 * center and tends to revisit the same blocks.
+	 */
+	TRIANGLE,
+	/**
+	 * Randomly shifted Halton sequence spreading samples evenly over the whole
+	 * volume across ticks.
+	 */
+	HALTON,
+	/**
+	 * As HALTON, but section columns that have turned up nothing of interest
+	 * are sampled less often.
+	 */
+	HALTON_COLUMN_BIAS
+
+}
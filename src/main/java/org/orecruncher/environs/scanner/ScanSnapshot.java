@@ -0,0 +1,158 @@
+/*
+ *  Dynamic Surroundings: Environs
+ *  Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+
+package org.orecruncher.environs.scanner;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.util.BitStorage;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.material.FluidState;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+/**
+ * Immutable copy of the chunk sections around a point, taken on the client
+ * thread so that scans can run on a worker thread. Sections that hold nothing
+ * of interest to the scan are not copied and read as air, as does anything
+ * outside of the captured area.
+ */
+@OnlyIn(Dist.CLIENT)
+public final class ScanSnapshot implements BlockGetter {
+
+	private static final BlockState AIR = Blocks.AIR.defaultBlockState();
+
+	private final BlockPos center;
+	private final int reference;
+	private final int originX;
+	private final int originY;
+	private final int originZ;
+	private final int sizeXZ;
+	private final int sizeY;
+	private final Section[] sections;
+	private final int minBuildHeight;
+	private final int height;
+
+	ScanSnapshot(@Nonnull final BlockPos center, final int reference, final int originX, final int originY,
+			final int originZ, final int sizeXZ, final int sizeY, @Nonnull final Section[] sections,
+			final int minBuildHeight, final int height) {
+		this.center = center;
+		this.reference = reference;
+		this.originX = originX;
+		this.originY = originY;
+		this.originZ = originZ;
+		this.sizeXZ = sizeXZ;
+		this.sizeY = sizeY;
+		this.sections = sections;
+		this.minBuildHeight = minBuildHeight;
+		this.height = height;
+	}
+
+	/**
+	 * Position the snapshot was taken around
+	 */
+	@Nonnull
+	public BlockPos getCenter() {
+		return this.center;
+	}
+
+	/**
+	 * Reference of the world at the time the snapshot was taken
+	 */
+	public int getReference() {
+		return this.reference;
+	}
+
+	/**
+	 * Determines if the section holding the position was copied into the
+	 * snapshot, meaning it holds states with sounds or effects.
+	 */
+	public boolean isCaptured(@Nonnull final BlockPos pos) {
+		return getSection(pos) != null;
+	}
+
+	@Override
+	@Nonnull
+	public BlockState getBlockState(@Nonnull final BlockPos pos) {
+		final Section section = getSection(pos);
+		return section == null ? AIR : section.get(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+	}
+
+	@Nullable
+	private Section getSection(@Nonnull final BlockPos pos) {
+		final int x = SectionPos.blockToSectionCoord(pos.getX()) - this.originX;
+		final int y = SectionPos.blockToSectionCoord(pos.getY()) - this.originY;
+		final int z = SectionPos.blockToSectionCoord(pos.getZ()) - this.originZ;
+		if (x < 0 || x >= this.sizeXZ || y < 0 || y >= this.sizeY || z < 0 || z >= this.sizeXZ)
+			return null;
+		return this.sections[(y * this.sizeXZ + z) * this.sizeXZ + x];
+	}
+
+	@Override
+	@Nonnull
+	public FluidState getFluidState(@Nonnull final BlockPos pos) {
+		return getBlockState(pos).getFluidState();
+	}
+
+	@Override
+	@Nullable
+	public BlockEntity getBlockEntity(@Nonnull final BlockPos pos) {
+		return null;
+	}
+
+	@Override
+	public int getHeight() {
+		return this.height;
+	}
+
+	@Override
+	public int getMinBuildHeight() {
+		return this.minBuildHeight;
+	}
+
+	/**
+	 * Copy of the palette and storage of a chunk section. The global palette is
+	 * not copied since it is the block state registry itself.
+	 */
+	static final class Section {
+		@Nullable
+		private final BlockState[] palette;
+		@Nonnull
+		private final BitStorage storage;
+
+		Section(@Nullable final BlockState[] palette, @Nonnull final BitStorage storage) {
+			this.palette = palette;
+			this.storage = storage;
+		}
+
+		@Nonnull
+		BlockState get(final int x, final int y, final int z) {
+			final int id = this.storage.get((y << 8) | (z << 4) | x);
+			final BlockState state = this.palette != null ? this.palette[id] : Block.stateById(id);
+			return state == null ? AIR : state;
+		}
+	}
+}
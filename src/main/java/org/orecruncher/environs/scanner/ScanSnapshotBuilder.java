@@ -0,0 +1,204 @@
+/*
+ *  Dynamic Surroundings: Environs
+ *  Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+
+package org.orecruncher.environs.scanner;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.util.BitStorage;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.GlobalPalette;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.Palette;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.environs.library.BlockStateUtil;
+import org.orecruncher.lib.random.XorShiftRandom;
+import org.orecruncher.sndctrl.misc.IMixinPalettedContainer;
+
+/**
+ * Maintains the section cache used to produce a ScanSnapshot each tick. Only
+ * sections whose palette holds a state with sounds or effects are copied, and
+ * a copy is shared between consecutive snapshots until the section is swapped
+ * out, it is flagged dirty by a block update, or it ages out. A resent chunk
+ * can refill a section in place, so that is only picked up by the age out. Only
+ * to be used from the client thread.
+ */
+@OnlyIn(Dist.CLIENT)
+final class ScanSnapshotBuilder {
+
+	// Limit the number of sections copied in a single tick to avoid a spike after teleport/login
+	private static final int MAX_CAPTURES_PER_TICK = 32;
+	// Sections are recaptured periodically in case a chunk was refreshed without block updates
+	private static final int REFRESH_TICKS = 100;
+	// Spreads the refreshes of sections captured on the same tick over this many ticks
+	private static final int REFRESH_JITTER = 50;
+
+	private final int range;
+	private final Long2ObjectOpenHashMap<Entry> cache = new Long2ObjectOpenHashMap<>();
+	private final Random random = new XorShiftRandom();
+	private Level world;
+	private long originSection = Long.MIN_VALUE;
+	private int filterGeneration = -1;
+	private int tickCount;
+
+	/**
+	 * @param range Range, in blocks, around the center that is to be captured
+	 */
+	ScanSnapshotBuilder(final int range) {
+		this.range = range;
+	}
+
+	/**
+	 * Captures a snapshot of the blocks around the specified position.
+	 *
+	 * @param world     The world to capture
+	 * @param center    The center of the volume, usually the player position
+	 * @param reference Reference of the world being captured
+	 * @return Immutable snapshot of the surrounding blocks
+	 */
+	@Nonnull
+	ScanSnapshot capture(@Nonnull final Level world, @Nonnull final BlockPos center, final int reference) {
+		this.tickCount++;
+
+		// Changes in world or block configuration invalidate everything
+		if (this.world != world || this.filterGeneration != BlockStateUtil.getStateFilterGeneration()) {
+			this.cache.clear();
+			this.world = world;
+			this.filterGeneration = BlockStateUtil.getStateFilterGeneration();
+			this.originSection = Long.MIN_VALUE;
+		}
+
+		final int originX = SectionPos.blockToSectionCoord(center.getX() - this.range);
+		final int originY = SectionPos.blockToSectionCoord(center.getY() - this.range);
+		final int originZ = SectionPos.blockToSectionCoord(center.getZ() - this.range);
+		final int sizeXZ = SectionPos.blockToSectionCoord(center.getX() + this.range) - originX + 1;
+		final int sizeY = SectionPos.blockToSectionCoord(center.getY() + this.range) - originY + 1;
+
+		final long newOrigin = SectionPos.asLong(originX, originY, originZ);
+		if (newOrigin != this.originSection) {
+			this.originSection = newOrigin;
+			evict(originX, originY, originZ, sizeXZ, sizeY);
+		}
+
+		final BitSet states = BlockStateUtil.getSoundsOrEffectsStates();
+		int budget = MAX_CAPTURES_PER_TICK;
+		final ScanSnapshot.Section[] sections = new ScanSnapshot.Section[sizeXZ * sizeXZ * sizeY];
+		int idx = 0;
+		for (int y = 0; y < sizeY; y++)
+			for (int z = 0; z < sizeXZ; z++)
+				for (int x = 0; x < sizeXZ; x++) {
+					final int sx = originX + x;
+					final int sy = originY + y;
+					final int sz = originZ + z;
+					final long key = SectionPos.asLong(sx, sy, sz);
+
+					Entry entry = this.cache.get(key);
+					final LevelChunkSection source = PaletteFilter.getSection(world, sx, sy, sz);
+					final boolean needsCapture = entry == null || entry.source != source
+							|| this.tickCount >= entry.refreshTick;
+					if (needsCapture && budget > 0) {
+						budget--;
+						final Palette<BlockState> palette = source == null ? null : PaletteFilter.getStates(source).getPalette();
+						entry = new Entry(source, capture(source, palette, states),
+								this.tickCount + REFRESH_TICKS + this.random.nextInt(REFRESH_JITTER));
+						this.cache.put(key, entry);
+					}
+
+					sections[idx++] = entry == null ? null : entry.data;
+				}
+
+		return new ScanSnapshot(center.immutable(), reference, originX, originY, originZ, sizeXZ, sizeY, sections,
+				world.getMinBuildHeight(), world.getHeight());
+	}
+
+	/**
+	 * Flags the sections containing the specified block positions for recapture.
+	 *
+	 * @param positions Block positions that have changed
+	 */
+	void invalidate(@Nonnull final Collection<BlockPos> positions) {
+		for (final BlockPos pos : positions)
+			this.cache.remove(SectionPos.asLong(pos));
+	}
+
+	/**
+	 * Releases all cached section data.
+	 */
+	void clear() {
+		this.cache.clear();
+		this.world = null;
+		this.originSection = Long.MIN_VALUE;
+	}
+
+	private void evict(final int originX, final int originY, final int originZ, final int sizeXZ, final int sizeY) {
+		for (final LongIterator itr = this.cache.keySet().iterator(); itr.hasNext();) {
+			final long key = itr.nextLong();
+			final int x = SectionPos.x(key) - originX;
+			final int y = SectionPos.y(key) - originY;
+			final int z = SectionPos.z(key) - originZ;
+			if (x < 0 || x >= sizeXZ || y < 0 || y >= sizeY || z < 0 || z >= sizeXZ)
+				itr.remove();
+		}
+	}
+
+	@Nullable
+	private static ScanSnapshot.Section capture(@Nullable final LevelChunkSection source,
+			@Nullable final Palette<BlockState> palette, @Nonnull final BitSet states) {
+		// Sections with nothing of interest read as air in the snapshot
+		if (source == null || palette == null || !PaletteFilter.mayHold(palette, states))
+			return null;
+
+		final IMixinPalettedContainer<BlockState> container = PaletteFilter.getStates(source);
+		final BitStorage storage = container.getStorage();
+		final BitStorage copy = new BitStorage(storage.getBits(), storage.getSize(), storage.getRaw().clone());
+
+		BlockState[] values = null;
+		if (!(palette instanceof GlobalPalette)) {
+			values = new BlockState[palette.getSize()];
+			for (int i = 0; i < values.length; i++)
+				values[i] = palette.valueFor(i);
+		}
+
+		return new ScanSnapshot.Section(values, copy);
+	}
+
+	private static final class Entry {
+		final LevelChunkSection source;
+		final ScanSnapshot.Section data;
+		final int refreshTick;
+
+		Entry(@Nullable final LevelChunkSection source, @Nullable final ScanSnapshot.Section data,
+				final int refreshTick) {
+			this.source = source;
+			this.data = data;
+			this.refreshTick = refreshTick;
+		}
+	}
+}
@@ -18,6 +18,7 @@
 
 package org.orecruncher.environs.scanner;
 
+import java.util.BitSet;
 import java.util.Random;
 import java.util.Set;
 
@@ -122,6 +123,17 @@ public abstract class Scanner {
 		return state.getMaterial() != Material.AIR;
 	}
 
+	/**
+	 * Ids, as given by Block.getId(), of the only block states that can be of
+	 * interest. Chunk sections whose palettes hold none of them are passed over
+	 * without looking at their blocks. Override to provide; null means any state
+	 * could be.
+	 */
+	@Nullable
+	protected BitSet getInterestingStates() {
+		return null;
+	}
+
 	public void preScan() {
 
 	}
@@ -130,16 +142,36 @@ public abstract class Scanner {
 
 	}
 
+	/**
+	 * Called for each sampled position where it is known whether the section
+	 * could hold any of the interesting states. Not called when that cannot be
+	 * determined.
+	 */
+	protected void onSample(@Nonnull final BlockPos pos, final boolean mayHold) {
+
+	}
+
 	public void tick() {
 
 		preScan();
 
 		final BlockGetter provider = this.locus.getWorld();
+		final BitSet states = getInterestingStates();
 		for (int count = 0; count < this.blocksPerTick; count++) {
 			final BlockPos pos = nextPos(this.workingPos, this.random);
 			if (pos == null)
 				break;
-			final BlockState state = provider.getBlockState(pos);
+			final BlockState state;
+			if (states != null && provider instanceof ScanSnapshot) {
+				// Snapshots only carry the sections that hold something with sounds or effects
+				final boolean mayHold = ((ScanSnapshot) provider).isCaptured(pos);
+				onSample(pos, mayHold);
+				if (!mayHold)
+					continue;
+				state = provider.getBlockState(pos);
+			} else {
+				state = provider.getBlockState(pos);
+			}
 			if (BLOCKSTATES_TO_IGNORE.contains(state))
 				continue;
 			if (interestingBlock(state)) {
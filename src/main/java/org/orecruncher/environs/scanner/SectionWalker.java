@@ -0,0 +1,232 @@
+/*
+ *  Dynamic Surroundings: Environs
+ *  Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+
+package org.orecruncher.environs.scanner;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Predicate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.util.BitStorage;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.GlobalPalette;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.Palette;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.BlockPosUtil;
+import org.orecruncher.sndctrl.misc.IMixinPalettedContainer;
+
+/**
+ * Walks the blocks of a box one chunk section at a time. Each section is
+ * fetched once, sections that are all air are skipped, and block states are
+ * read straight out of the palette storage of the section. Whether a palette
+ * entry is of interest is decided once per section rather than once per block,
+ * and a section whose palette holds none of the states of interest is skipped
+ * without looking at its blocks.
+ * A walk can be spread over several ticks by giving it a budget; it picks up
+ * with the next section on the following call.
+ */
+@OnlyIn(Dist.CLIENT)
+public class SectionWalker {
+
+	@FunctionalInterface
+	public interface IBlockVisitor {
+		/**
+		 * The BlockPos provided is not safe to hold on to beyond the call.
+		 */
+		void visit(@Nonnull final BlockState state, @Nonnull final BlockPos pos);
+	}
+
+	// What is known about a palette entry in the current section
+	private static final byte UNKNOWN = 0;
+	private static final byte SKIP = 1;
+	private static final byte VISIT = 2;
+
+	private final int minX;
+	private final int minY;
+	private final int minZ;
+	private final int maxX;
+	private final int maxY;
+	private final int maxZ;
+
+	private final int minSectionX;
+	private final int minSectionZ;
+	private final int maxSectionX;
+	private final int maxSectionY;
+	private final int maxSectionZ;
+
+	// Next section to be walked
+	private int sectionX;
+	private int sectionY;
+	private int sectionZ;
+	private boolean finished;
+
+	private final BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+	private byte[] verdicts = new byte[256];
+
+	public SectionWalker(@Nonnull final BlockPos p1, @Nonnull final BlockPos p2) {
+		final BlockPos min = BlockPosUtil.createMinPoint(p1, p2);
+		final BlockPos max = BlockPosUtil.createMaxPoint(p1, p2);
+		this.minX = min.getX();
+		this.minY = min.getY();
+		this.minZ = min.getZ();
+		this.maxX = max.getX();
+		this.maxY = max.getY();
+		this.maxZ = max.getZ();
+
+		this.minSectionX = SectionPos.blockToSectionCoord(this.minX);
+		this.minSectionZ = SectionPos.blockToSectionCoord(this.minZ);
+		this.maxSectionX = SectionPos.blockToSectionCoord(this.maxX);
+		this.maxSectionY = SectionPos.blockToSectionCoord(this.maxY);
+		this.maxSectionZ = SectionPos.blockToSectionCoord(this.maxZ);
+
+		this.sectionX = this.minSectionX;
+		this.sectionY = SectionPos.blockToSectionCoord(this.minY);
+		this.sectionZ = this.minSectionZ;
+	}
+
+	public boolean isFinished() {
+		return this.finished;
+	}
+
+	/**
+	 * Walks sections until the budget is used up or the whole box has been
+	 * visited. A section that is walked costs the number of blocks it has in the
+	 * box, and a section that is skipped costs 1.
+	 *
+	 * @param world   Source of the chunk sections
+	 * @param states  Ids of the states of interest, as given by Block.getId(), or
+	 *                null if the filter is to decide on its own
+	 * @param filter  Decides if a block state is passed to the visitor
+	 * @param visitor Receives the blocks that pass the filter
+	 * @param budget  Number of blocks that can be visited this call
+	 * @return true if the walk is finished; false otherwise
+	 */
+	public boolean walk(@Nonnull final BlockGetter world, @Nullable final BitSet states,
+			@Nonnull final Predicate<BlockState> filter, @Nonnull final IBlockVisitor visitor, final int budget) {
+		int remaining = budget;
+		while (!this.finished && remaining > 0) {
+			remaining -= walkSection(world, states, filter, visitor);
+			advance();
+		}
+		return this.finished;
+	}
+
+	private void advance() {
+		if (++this.sectionX > this.maxSectionX) {
+			this.sectionX = this.minSectionX;
+			if (++this.sectionZ > this.maxSectionZ) {
+				this.sectionZ = this.minSectionZ;
+				if (++this.sectionY > this.maxSectionY)
+					this.finished = true;
+			}
+		}
+	}
+
+	private int walkSection(@Nonnull final BlockGetter world, @Nullable final BitSet states,
+			@Nonnull final Predicate<BlockState> filter, @Nonnull final IBlockVisitor visitor) {
+
+		// The part of the box that falls in the section
+		final int x0 = Math.max(this.minX, SectionPos.sectionToBlockCoord(this.sectionX));
+		final int y0 = Math.max(this.minY, SectionPos.sectionToBlockCoord(this.sectionY));
+		final int z0 = Math.max(this.minZ, SectionPos.sectionToBlockCoord(this.sectionZ));
+		final int x1 = Math.min(this.maxX, SectionPos.sectionToBlockCoord(this.sectionX) + 15);
+		final int y1 = Math.min(this.maxY, SectionPos.sectionToBlockCoord(this.sectionY) + 15);
+		final int z1 = Math.min(this.maxZ, SectionPos.sectionToBlockCoord(this.sectionZ) + 15);
+		if (x0 > x1 || y0 > y1 || z0 > z1)
+			return 1;
+
+		// Without a level there are no sections to get at
+		if (!(world instanceof Level))
+			return walkBlocks(world, filter, visitor, x0, y0, z0, x1, y1, z1);
+
+		final LevelChunkSection section = PaletteFilter.getSection((Level) world, this.sectionX, this.sectionY,
+				this.sectionZ);
+		if (section == null)
+			return 1;
+
+		final IMixinPalettedContainer<BlockState> container = PaletteFilter.getStates(section);
+		final BitStorage storage = container.getStorage();
+		final Palette<BlockState> palette = container.getPalette();
+		if (states != null && !PaletteFilter.mayHold(palette, states))
+			return 1;
+
+		// The global palette is the whole block state registry, which is too big to remember verdicts for. Sections
+		// only use it when they hold a large number of different states.
+		final boolean remember = !(palette instanceof GlobalPalette);
+		if (remember) {
+			final int size = palette.getSize();
+			if (this.verdicts.length < size)
+				this.verdicts = new byte[size];
+			else
+				Arrays.fill(this.verdicts, 0, size, UNKNOWN);
+			// States not in the set are rejected without asking the filter
+			if (states != null)
+				for (int i = 0; i < size; i++) {
+					final BlockState state = palette.valueFor(i);
+					if (state == null || !states.get(Block.getId(state)))
+						this.verdicts[i] = SKIP;
+				}
+		}
+
+		for (int y = y0; y <= y1; y++)
+			for (int z = z0; z <= z1; z++)
+				for (int x = x0; x <= x1; x++) {
+					final int id = storage.get(((y & 15) << 8) | ((z & 15) << 4) | (x & 15));
+					byte verdict = remember ? this.verdicts[id] : UNKNOWN;
+					BlockState state = null;
+					if (verdict == UNKNOWN) {
+						state = palette.valueFor(id);
+						verdict = state != null && filter.test(state) ? VISIT : SKIP;
+						if (remember)
+							this.verdicts[id] = verdict;
+					}
+					if (verdict == VISIT) {
+						if (state == null)
+							state = palette.valueFor(id);
+						visitor.visit(state, this.pos.set(x, y, z));
+					}
+				}
+
+		return (x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1);
+	}
+
+	private int walkBlocks(@Nonnull final BlockGetter world, @Nonnull final Predicate<BlockState> filter,
+			@Nonnull final IBlockVisitor visitor, final int x0, final int y0, final int z0, final int x1,
+			final int y1, final int z1) {
+		for (int y = y0; y <= y1; y++)
+			for (int z = z0; z <= z1; z++)
+				for (int x = x0; x <= x1; x++) {
+					final BlockState state = world.getBlockState(this.pos.set(x, y, z));
+					if (filter.test(state))
+						visitor.visit(state, this.pos);
+				}
+		return (x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1);
+	}
+
+}
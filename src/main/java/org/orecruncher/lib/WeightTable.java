@@ -25,6 +25,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Collection;
 import java.util.Random;
+import java.util.function.Consumer;
 
 /**
  * Classic WeightTable for random weighted selection.
@@ -94,6 +95,14 @@ public class WeightTable<T> {
         return selected.getItem();
     }
 
+    /**
+     * Passes each item in the table to the consumer, regardless of weight.
+     */
+    public void forEach(@Nonnull final Consumer<T> consumer) {
+        for (final IItem<T> e : this.entries)
+            consumer.accept(e.getItem());
+    }
+
     public void trim() {
         this.entries.trim();
     }
@@ -0,0 +1,112 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.lib.math;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of durations in nanoseconds.  Each power of 2 is split into 4 buckets so a reported value is
+ * within 25% of the actual.  Recording never blocks or allocates, and readers can query at any time without
+ * coordinating with the writers.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos Duration in nanoseconds
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(nanos, 0);
+        this.counts.incrementAndGet(bucket(value));
+        this.total.incrementAndGet();
+        long current = this.max.get();
+        while (value > current && !this.max.compareAndSet(current, value))
+            current = this.max.get();
+    }
+
+    /**
+     * Number of durations recorded
+     */
+    public long getCount() {
+        return this.total.get();
+    }
+
+    /**
+     * Longest duration recorded, in nanoseconds
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Estimates the duration below which the specified fraction of the recorded durations fall.
+     *
+     * @param fraction Fraction of the recorded durations, 0 to 1
+     * @return Duration in nanoseconds, or 0 if nothing has been recorded
+     */
+    public long getPercentile(final double fraction) {
+        final long count = this.total.get();
+        if (count == 0)
+            return 0;
+        final long target = Math.max((long) Math.ceil(count * Math.min(Math.max(fraction, 0D), 1D)), 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts.get(i);
+            if (seen >= target)
+                return Math.min(upperBound(i), this.max.get());
+        }
+        return this.max.get();
+    }
+
+    /**
+     * Clears the histogram.  Durations recorded while clearing may or may not survive.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            this.counts.set(i, 0);
+        this.total.set(0);
+        this.max.set(0);
+    }
+
+    private static int bucket(final long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(final int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        final int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final int sub = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -18,16 +18,25 @@
 
 package org.orecruncher.lib.threading;
 
-import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.time.StopWatch;
 import org.orecruncher.lib.logging.IModLog;
+import org.orecruncher.lib.math.LatencyHistogram;
 import org.orecruncher.lib.math.TimerEMA;
 
 import javax.annotation.Nonnull;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Executes a task at a fixed rate on a dedicated thread.  Iterations are scheduled against absolute deadlines so
+ * the rate does not drift with the time the task takes.  If an iteration runs past the start of the next, the next
+ * starts right away and any further periods that were missed are skipped rather than run back to back to catch up.
+ */
 public final class Worker {
 
+    private static final double NANOS_PER_MSEC = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long LATENCY_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
     @Nonnull
     private final Thread thread;
     @Nonnull
@@ -35,9 +44,20 @@ public final class Worker {
     @Nonnull
     private final IModLog logger;
     private final int frequency;
-    @Nonnull
-    private String diagnosticString;
-    private boolean stopProcessing;
+    private final long periodNanos;
+    private final TimerEMA timeTrack;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    // Latency figures of the last completed window, shown by the diagnostic string.  Only touched by the thread
+    // that asks for the diagnostic string.
+    private long windowStart = System.nanoTime();
+    private boolean hasWindow;
+    private long windowP50;
+    private long windowP99;
+    private long windowMax;
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private volatile double average;
+    private volatile boolean stopProcessing;
 
     /**
      * Instantiates a worker thread to execute a task on a repeating basis.
@@ -53,37 +73,48 @@ public final class Worker {
         this.thread.setDaemon(true);
         this.task = task;
         this.frequency = frequencyMsecs;
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(frequencyMsecs);
         this.logger = logger;
-        this.diagnosticString = StringUtils.EMPTY;
+        this.timeTrack = new TimerEMA(threadName);
     }
 
     private void run() {
-        final TimerEMA timeTrack = new TimerEMA(this.thread.getName());
-        final StopWatch sw = new StopWatch();
-        while (!this.stopProcessing ) {
-            sw.start();
+        long deadline = System.nanoTime();
+        while (!this.stopProcessing) {
+            final long start = System.nanoTime();
             try {
                 task.run();
             } catch (@Nonnull final Throwable t) {
                 logger.error(t, "Error processing %s!", this.thread.getName());
             }
-            sw.stop();
-            timeTrack.update(sw.getNanoTime());
-            this.diagnosticString = String.format("%s (deadline %d)", timeTrack.toString(), this.frequency);
-            long sleepTime = this.frequency - sw.getTime(TimeUnit.MILLISECONDS);
-            sw.reset();
-            if (sleepTime > 0) {
-                try {
-                    Thread.sleep(sleepTime);
-                } catch (@Nonnull final Throwable ignore) {
+            final long elapsed = System.nanoTime() - start;
+            this.latency.record(elapsed);
+            this.average = this.timeTrack.update(elapsed);
+
+            deadline += this.periodNanos;
+            final long late = System.nanoTime() - deadline;
+            if (late >= 0) {
+                // Overran.  Start the next iteration now and put the schedule back on the grid past any periods
+                // that were missed entirely.
+                this.overruns.incrementAndGet();
+                final long missed = late / this.periodNanos;
+                if (missed > 0) {
+                    this.skipped.addAndGet(missed);
+                    deadline += missed * this.periodNanos;
+                }
+                continue;
+            }
+
+            // Park can return early so keep at it until the deadline
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0 && !this.stopProcessing) {
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
                     logger.warn("Terminating %s thread", this.thread.getName());
                     return;
                 }
-            } else {
-                logger.warn("%s is lagging; behind %d msecs", this.thread.getName(), Math.abs(sleepTime));
             }
         }
-
     }
 
     /**
@@ -96,6 +127,7 @@ public final class Worker {
     public void stop() {
         try {
             this.stopProcessing = true;
+            LockSupport.unpark(this.thread);
             this.thread.join();
         } catch(@Nonnull final Throwable t) {
             logger.warn("Error stopping worker thread '%s'", this.thread.getName());
@@ -103,12 +135,57 @@ public final class Worker {
     }
 
     /**
-     * Gathers a diagnostic string to display or log.
+     * Histogram of how long each iteration of the task took since the last latency window closed
+     */
+    @Nonnull
+    public LatencyHistogram getLatency() {
+        return this.latency;
+    }
+
+    /**
+     * Number of iterations that ran past the start of the next
+     */
+    public long getOverruns() {
+        return this.overruns.get();
+    }
+
+    /**
+     * Number of iterations that were skipped because of overruns
+     */
+    public long getSkipped() {
+        return this.skipped.get();
+    }
+
+    /**
+     * Gathers a diagnostic string to display or log.  The string is built on request so there is no cost when
+     * nobody is looking.  Latency is reported for the last completed window so a stall shows up for a while and
+     * then ages out rather than sticking around for the life of the worker.
      *
      * @return String for logging or display
      */
     @Nonnull
     public String getDiagnosticString() {
-        return this.diagnosticString;
+        final long now = System.nanoTime();
+        if (now - this.windowStart >= LATENCY_WINDOW_NANOS) {
+            this.windowP50 = this.latency.getPercentile(0.5D);
+            this.windowP99 = this.latency.getPercentile(0.99D);
+            this.windowMax = this.latency.getMax();
+            this.hasWindow = true;
+            this.latency.reset();
+            this.windowStart = now;
+        }
+
+        final long p50 = this.hasWindow ? this.windowP50 : this.latency.getPercentile(0.5D);
+        final long p99 = this.hasWindow ? this.windowP99 : this.latency.getPercentile(0.99D);
+        final long max = this.hasWindow ? this.windowMax : this.latency.getMax();
+        return String.format("%s:%7.3fms p50 %.3fms p99 %.3fms max %.3fms (deadline %d) overruns %d, skipped %d",
+                this.timeTrack.name(),
+                this.average / NANOS_PER_MSEC,
+                p50 / NANOS_PER_MSEC,
+                p99 / NANOS_PER_MSEC,
+                max / NANOS_PER_MSEC,
+                this.frequency,
+                this.overruns.get(),
+                this.skipped.get());
     }
 }
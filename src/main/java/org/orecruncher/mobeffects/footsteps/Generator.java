@@ -50,6 +50,7 @@ import org.orecruncher.mobeffects.library.Constants;
 import org.orecruncher.mobeffects.library.FootstepLibrary;
 import org.orecruncher.sndctrl.api.acoustics.AcousticEvent;
 import org.orecruncher.sndctrl.api.acoustics.IAcoustic;
+import org.orecruncher.sndctrl.audio.SoundPrefetcher;
 import org.orecruncher.sndctrl.audio.acoustic.AcousticCompiler;
 
 @OnlyIn(Dist.CLIENT)
@@ -61,6 +62,8 @@ public class Generator {
 
 	protected static final Random RANDOM = XorShiftRandom.current();
 	protected static final int BRUSH_INTERVAL = 2;
+	// Ticks of movement to look ahead for the surface the player is about to walk on
+	protected static final int PREFETCH_TICKS = 10;
 
 	protected final Variator VAR;
 
@@ -133,6 +136,9 @@ public class Generator {
 		simulateAirborne(entity);
 		simulateBrushes(entity);
 
+		if (entity == GameUtils.getPlayer())
+			prefetchSurface(entity);
+
 		if (this.stepThisFrame)
 			this.pedometer++;
 
@@ -145,6 +151,26 @@ public class Generator {
 		}
 	}
 
+	/**
+	 * Hints the sound prefetcher with the acoustics of the surface the player is heading toward so that the first
+	 * step onto a different block does not have to wait for its sound to load.
+	 */
+	protected void prefetchSurface(@Nonnull final LivingEntity entity) {
+		if (this.isInWater) {
+			SoundPrefetcher.hint(FootstepLibrary.getSwimAcoustic());
+			return;
+		}
+
+		final Vec3 motion = entity.getDeltaMovement();
+		final BlockPos pos = new BlockPos(
+				entity.getX() + motion.x * PREFETCH_TICKS,
+				entity.getBoundingBox().minY - PROBE_DEPTH,
+				entity.getZ() + motion.z * PREFETCH_TICKS);
+		final BlockState state = entity.getCommandSenderWorld().getBlockState(pos);
+		if (!state.isAir())
+			SoundPrefetcher.hint(FootstepLibrary.getBlockAcoustics(state));
+	}
+
 	protected boolean isClimbing(@Nonnull final LivingEntity entity) {
 		final Level world = entity.getCommandSenderWorld();
 		final BlockPos blockPos = entity.blockPosition();
@@ -37,6 +37,7 @@ import org.orecruncher.lib.logging.ModLog;
 import org.orecruncher.lib.random.XorShiftRandom;
 import org.orecruncher.sndctrl.api.IMC;
 import org.orecruncher.sndctrl.audio.AudioEngine;
+import org.orecruncher.sndctrl.audio.SoundPrefetcher;
 import org.orecruncher.lib.effects.entity.CapabilityEntityFXData;
 import org.orecruncher.sndctrl.config.Config;
 import org.orecruncher.sndctrl.gui.Keys;
@@ -90,6 +91,7 @@ public final class SoundControl {
         }
 
         AudioEngine.initialize();
+        SoundPrefetcher.initialize();
         EntityEffectLibrary.initialize();
         EntityEffectHandler.initialize();
     }
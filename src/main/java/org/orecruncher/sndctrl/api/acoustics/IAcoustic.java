@@ -26,6 +26,7 @@ import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 
 import javax.annotation.Nonnull;
+import java.util.function.Consumer;
 
 @OnlyIn(Dist.CLIENT)
 public interface IAcoustic {
@@ -96,4 +97,11 @@ public interface IAcoustic {
     }
 
     IAcousticFactory getFactory(@Nonnull final AcousticEvent event);
+
+    /**
+     * Supplies the names of the sound events the acoustic could play, regardless of event or chance.  Used to load
+     * sounds ahead of when they are needed.
+     */
+    default void forEachSound(@Nonnull final Consumer<ResourceLocation> consumer) {
+    }
 }
@@ -19,12 +19,14 @@
 package org.orecruncher.sndctrl.audio;
 
 import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.audio.*;
 import net.minecraft.client.sounds.ChannelAccess.ChannelHandle;
 import net.minecraft.world.phys.Vec3;
 import net.minecraft.ChatFormatting;
+import net.minecraft.resources.ResourceLocation;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import net.minecraftforge.common.MinecraftForge;
@@ -35,6 +37,7 @@ import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.LogicalSide;
 import org.apache.commons.lang3.StringUtils;
 import org.orecruncher.lib.GameUtils;
+import org.orecruncher.lib.TickCounter;
 import org.orecruncher.lib.events.DiagnosticEvent;
 import org.orecruncher.lib.logging.IModLog;
 import org.orecruncher.sndctrl.config.Config;
@@ -47,13 +50,13 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import net.minecraft.client.resources.sounds.SoundInstance;
 
 /**
- * Handles the life cycle of sounds submitted to the Minecraft sound engine.
+ * Handles the life cycle of sounds submitted to the Minecraft sound engine.  State changes are driven by hooks in the
+ * sound engine as sounds are played, popped off the delayed queue, and released after their channel stops.  A
+ * periodic audit catches anything the hooks miss, such as the engine dropping sounds when a category is muted.
  */
 @OnlyIn(Dist.CLIENT)
 public final class AudioEngine {
@@ -61,7 +64,11 @@ public final class AudioEngine {
     private static final String FMT_DBG_SOUND_SYSTEM = ChatFormatting.AQUA + "SoundSystem: %d/%d";
     private static final String FMT_DBG_TRACKED = ChatFormatting.AQUA + "AudioEngine: %d";
     private static final String FMT_DBG_SOUND = ChatFormatting.GOLD + "%s: %d";
+    // Ticks between audits of the tracked sound states against the sound engine
+    private static final int AUDIT_INTERVAL = 20;
     private static final ReferenceOpenHashSet<ISoundInstance> playingSounds = new ReferenceOpenHashSet<>(256);
+    // Number of sounds playing in the engine by sound file, for diagnostics
+    private static final Object2IntOpenHashMap<ResourceLocation> soundCounts = new Object2IntOpenHashMap<>();
 
     @Nonnull
     private static List<String> diagnostics = ImmutableList.of();
@@ -101,6 +108,7 @@ public final class AudioEngine {
     public static void stopAll() {
         LOGGER.debug("Stopping all sounds");
         GameUtils.getSoundHander().stop();
+        SoundCoalescer.clear();
         playingSounds.forEach(s -> s.setState(SoundState.DONE));
         processTerminalSounds();
     }
@@ -109,15 +117,18 @@ public final class AudioEngine {
      * Submits the sound to the sound system to be played.
      * <p>
      * The status of the sound play can be obtained by checking the sound instance status.  If the sound instance is
-     * in a non-terminal state the instance is being handled.
+     * in a non-terminal state the instance is being handled.  A one shot sound that is identical to one played nearby
+     * a moment ago is merged into it and marked done without playing.
      *
      * @param sound Sound to play
      */
     public static void play(@Nonnull final ISoundInstance sound) {
         Objects.requireNonNull(sound);
         // If the sound is already queued return it's current active state.
-        if (!playingSounds.contains(sound)) {
+        if (!playingSounds.contains(sound) && !SoundCoalescer.merge(sound)) {
             playSound0(sound);
+            if (!sound.getState().isTerminal())
+                SoundCoalescer.played(sound);
         }
     }
 
@@ -134,8 +145,8 @@ public final class AudioEngine {
             GameUtils.getSoundHander().playDelayed(sound, sound.getPlayDelay());
             sound.setState(SoundState.DELAYED);
             playingSounds.add(sound);
-        } else if (SoundUtils.hasRoom()) {
-            // Play the sound now
+        } else {
+            // Play the sound now.  Whether there is room for it is decided as the sound engine processes the play.
             try {
                 playedSound = null;
                 GameUtils.getSoundHander().play(sound);
@@ -179,8 +190,7 @@ public final class AudioEngine {
     }
 
     /**
-     * Run down our active sound list checking that they are still active. If they
-     * aren't update the state accordingly.
+     * Audits the tracked sounds every so often, and generates diagnostics.
      *
      * @param event Event that was raised
      */
@@ -189,6 +199,34 @@ public final class AudioEngine {
         if (event.side != LogicalSide.CLIENT || event.phase != Phase.START)
             return;
 
+        if (TickCounter.getTickCount() % AUDIT_INTERVAL == 0)
+            audit();
+
+        // Generate diagnostics if needed.
+        if (processDiagnostics() && Minecraft.getInstance().options.renderDebug) {
+            diagnostics = new ArrayList<>(16);
+            diagnostics.add(String.format(FMT_DBG_SOUND_SYSTEM, SoundUtils.getTotalPlaying(), SoundUtils.getMaxSounds()));
+            diagnostics.add(String.format(FMT_DBG_TRACKED, playingSounds.size()));
+            diagnostics.add(SoundBufferCache.getDiagnosticString());
+            diagnostics.add(SoundPrefetcher.getDiagnosticString());
+            diagnostics.add(VoiceBudget.getDiagnosticString());
+            diagnostics.add(SoundCoalescer.getDiagnosticString());
+
+            soundCounts.object2IntEntrySet().stream()
+                    .map(e -> String.format(FMT_DBG_SOUND, e.getKey().toString(), e.getIntValue()))
+                    .sorted()
+                    .forEach(diagnostics::add);
+        } else if (diagnostics.size() > 0) {
+            diagnostics = ImmutableList.of();
+        }
+    }
+
+    /**
+     * Run down our active sound list checking that they are still active. If they aren't update the state
+     * accordingly.  The sound counts are rebuilt as well since sounds the engine drops without releasing through the
+     * hooks would otherwise stay counted.
+     */
+    private static void audit() {
         final Map<SoundInstance, Integer> delayedSounds = SoundUtils.getDelayedSounds();
         final Map<SoundInstance, ChannelHandle> playing = SoundUtils.getPlayingSounds();
 
@@ -233,22 +271,22 @@ public final class AudioEngine {
         // Process any sounds in a terminal state.
         processTerminalSounds();
 
-        // Generate diagnostics if needed.
-        if (processDiagnostics() && Minecraft.getInstance().options.renderDebug) {
-            diagnostics = new ArrayList<>(16);
-            diagnostics.add(String.format(FMT_DBG_SOUND_SYSTEM, SoundUtils.getTotalPlaying(), SoundUtils.getMaxSounds()));
-            diagnostics.add(String.format(FMT_DBG_TRACKED, playingSounds.size()));
+        soundCounts.clear();
+        for (final SoundInstance sound : playing.keySet())
+            soundCounts.addTo(sound.getSound().getLocation(), 1);
+    }
 
-            playing.keySet().stream()
-                    .map(s -> s.getSound().getLocation())
-                    .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
-                    .entrySet().stream()
-                    .map(e -> String.format(FMT_DBG_SOUND, e.getKey().toString(), e.getValue()))
-                    .sorted()
-                    .forEach(diagnostics::add);
-        } else if (diagnostics.size() > 0) {
-            diagnostics = ImmutableList.of();
-        }
+    /**
+     * Closes the coalescing windows that have run their course.  Done at the end of the tick so that the sounds played
+     * by the handlers during the tick see the windows opened earlier in the tick.
+     *
+     * @param event Event that was raised
+     */
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public static void onClientTickEnd(@Nonnull final TickEvent.ClientTickEvent event) {
+        if (event.side != LogicalSide.CLIENT || event.phase != Phase.END)
+            return;
+        SoundCoalescer.expire();
     }
 
     private static void processTerminalSounds() {
@@ -278,8 +316,53 @@ public final class AudioEngine {
      */
     public static void onPlaySound(@Nonnull final SoundInstance sound) {
         playedSound = sound;
+        VoiceBudget.onPlay(sound);
+        soundCounts.addTo(sound.getSound().getLocation(), 1);
+        // Sounds coming off the delayed queue are played by the engine
+        if (sound instanceof ISoundInstance && ((ISoundInstance) sound).getState() == SoundState.DELAYED && playingSounds.contains(sound))
+            ((ISoundInstance) sound).setState(SoundState.PLAYING);
         if (!(playedSound instanceof ISoundInstance)) {
             LOGGER.debug(Config.Flags.BASIC_SOUND_PLAY, () -> String.format("PLAYING: [%s]", SoundUtils.debugString(playedSound)));
         }
     }
+
+    /**
+     * Hook that is called when the engine pops a sound off of its delayed queue and attempts to play it.  If the
+     * play did not happen the sound was dropped by the engine.
+     * @param sound Sound that came off the delayed queue
+     */
+    public static void onPlayDelayedSound(@Nonnull final SoundInstance sound) {
+        if (sound instanceof ISoundInstance && ((ISoundInstance) sound).getState() == SoundState.DELAYED && playingSounds.remove(sound))
+            ((ISoundInstance) sound).setState(SoundState.DONE);
+    }
+
+    /**
+     * Hook that is called when the engine releases a sound after its channel has stopped.  Sounds that repeat are
+     * put back on the delayed queue by the engine before they are released.
+     * @param sound Sound that is being released
+     */
+    public static void onStopSound(@Nonnull final SoundInstance sound) {
+        final ResourceLocation location = sound.getSound().getLocation();
+        if (soundCounts.addTo(location, -1) <= 1)
+            soundCounts.removeInt(location);
+
+        if (sound instanceof ISoundInstance && playingSounds.contains(sound)) {
+            final ISoundInstance instance = (ISoundInstance) sound;
+            if (SoundUtils.getDelayedSounds().containsKey(sound)) {
+                instance.setState(SoundState.DELAYED);
+            } else {
+                instance.setState(SoundState.DONE);
+                playingSounds.remove(instance);
+            }
+        }
+    }
+
+    /**
+     * Hook that is called when the engine stops all sounds and clears its lists.
+     */
+    public static void onStopAllSounds() {
+        playingSounds.forEach(s -> s.setState(SoundState.DONE));
+        playingSounds.clear();
+        soundCounts.clear();
+    }
 }
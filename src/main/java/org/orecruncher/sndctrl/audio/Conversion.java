@@ -22,16 +22,22 @@ import com.mojang.blaze3d.audio.SoundBuffer;
 import net.minecraft.client.sounds.AudioStream;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
+import org.lwjgl.BufferUtils;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.sound.sampled.AudioFormat;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
 
 @OnlyIn(Dist.CLIENT)
 public final class Conversion {
 
+    // Number of frames converted per pass over the scratch array
+    private static final int CHUNK_FRAMES = 4096;
+
     /**
      * Handles the conversion of the incoming IAudioStream into mono format as needed.
      *
@@ -40,10 +46,10 @@ public final class Conversion {
      */
     public static AudioStream convert(@Nonnull final AudioStream inputStream) {
         final AudioFormat format = inputStream.getFormat();
-        if (format.getChannels() == 1)
+        if (!canConvert(format))
             return inputStream;
 
-        return new MonoStream(inputStream);
+        return new MonoStream(inputStream, toMono(format));
     }
 
     /**
@@ -66,35 +72,41 @@ public final class Conversion {
             return buffer;
 
         // Do the conversion.  Essentially it averages the values in the source buffer based on the sample size.
-        boolean bigendian = format.isBigEndian();
-        final AudioFormat monoformat = new AudioFormat(
-                format.getEncoding(),
-                format.getSampleRate(),
-                bits,
-                1, // Mono - single channel
-                format.getFrameSize() >> 1,
-                format.getFrameRate(),
-                bigendian);
+        final AudioFormat monoformat = toMono(format);
 
         final ByteBuffer source = buffer.data;
         if (source == null) {
             return buffer;
         }
 
+        // The frames are converted a chunk at a time through a scratch array.  The mono data lands in the front half
+        // of the buffer, behind the stereo data that has yet to be read.
         final int sourceLength = source.limit();
-        final int skip = format.getFrameSize();
-        for (int i = 0; i < sourceLength; i += skip) {
-            final int targetIdx = i >> 1;
-            if (bits == 8) {
-                final int c1 = source.get(i) >> 1;
-                final int c2 = source.get(i + 1) >> 1;
-                final int v = c1 + c2;
-                source.put(targetIdx, (byte) v);
-            } else {
-                final int c1 = source.getShort(i) >> 1;
-                final int c2 = source.getShort(i + 2) >> 1;
-                final int v = c1 + c2;
-                source.putShort(targetIdx, (short) v);
+        final int frames = sourceLength / format.getFrameSize();
+        if (bits == 8) {
+            final ByteBuffer view = source.duplicate();
+            final byte[] work = new byte[Math.min(frames, CHUNK_FRAMES) << 1];
+            for (int frame = 0; frame < frames; frame += CHUNK_FRAMES) {
+                final int count = Math.min(frames - frame, CHUNK_FRAMES);
+                view.position(frame << 1);
+                view.get(work, 0, count << 1);
+                downmix(work, 0, work, 0, count);
+                view.position(frame);
+                view.put(work, 0, count);
+            }
+        } else {
+            // Views do not inherit the byte order of their parent
+            final ByteBuffer bytes = source.duplicate().order(source.order());
+            bytes.position(0);
+            final ShortBuffer view = bytes.asShortBuffer();
+            final short[] work = new short[Math.min(frames, CHUNK_FRAMES) << 1];
+            for (int frame = 0; frame < frames; frame += CHUNK_FRAMES) {
+                final int count = Math.min(frames - frame, CHUNK_FRAMES);
+                view.position(frame << 1);
+                view.get(work, 0, count << 1);
+                downmix(work, 0, work, 0, count);
+                view.position(frame);
+                view.put(work, 0, count);
             }
         }
         // Patch up the old object
@@ -104,22 +116,130 @@ public final class Conversion {
         return buffer;
     }
 
+    /**
+     * Indicates whether sounds of the specified format can be converted to mono.
+     *
+     * @param format Format of the sound data
+     * @return true if the sound is stereo with 8 or 16 bit samples
+     */
+    public static boolean canConvert(@Nonnull final AudioFormat format) {
+        final int bits = format.getSampleSizeInBits();
+        return format.getChannels() == 2 && (bits == 8 || bits == 16);
+    }
+
+    /**
+     * Averages interleaved stereo samples into mono.  The target can be the same array as the source provided the
+     * target offset is not past the source offset, which allows the conversion to be done in place.
+     *
+     * @param src       Stereo samples, left channel first
+     * @param srcOffset Index of the first stereo sample
+     * @param dst       Array to receive the mono samples
+     * @param dstOffset Index of the first mono sample
+     * @param frames    Number of frames to convert
+     */
+    static void downmix(@Nonnull final short[] src, final int srcOffset, @Nonnull final short[] dst, final int dstOffset, final int frames) {
+        for (int i = 0; i < frames; i++) {
+            final int j = srcOffset + (i << 1);
+            dst[dstOffset + i] = (short) ((src[j] >> 1) + (src[j + 1] >> 1));
+        }
+    }
+
+    /**
+     * 8 bit version of downmix()
+     */
+    static void downmix(@Nonnull final byte[] src, final int srcOffset, @Nonnull final byte[] dst, final int dstOffset, final int frames) {
+        for (int i = 0; i < frames; i++) {
+            final int j = srcOffset + (i << 1);
+            dst[dstOffset + i] = (byte) ((src[j] >> 1) + (src[j + 1] >> 1));
+        }
+    }
+
+    @Nonnull
+    private static AudioFormat toMono(@Nonnull final AudioFormat format) {
+        return new AudioFormat(
+                format.getEncoding(),
+                format.getSampleRate(),
+                format.getSampleSizeInBits(),
+                1, // Mono - single channel
+                format.getFrameSize() >> 1,
+                format.getFrameRate(),
+                format.isBigEndian());
+    }
+
+    /**
+     * Downmixes a stereo stream chunk by chunk as the sound engine reads it.  The converted data goes into an output
+     * buffer owned by the stream that is reused for each chunk; the sound engine copies the data into an OpenAL
+     * buffer before asking for the next one.
+     */
     private static class MonoStream implements AudioStream {
 
         private final AudioStream source;
-
-        public MonoStream(@Nonnull final AudioStream source) {
+        private final AudioFormat format;
+        private final boolean is16Bit;
+        private final ByteOrder order;
+        private final int frameSize;
+
+        // Scratch for the bulk copy out of the source chunk, and the reusable output
+        private short[] shorts = new short[0];
+        private byte[] bytes = new byte[0];
+        private ByteBuffer output;
+        private ShortBuffer outputShorts;
+
+        public MonoStream(@Nonnull final AudioStream source, @Nonnull final AudioFormat format) {
             this.source = source;
+            this.format = format;
+            this.is16Bit = format.getSampleSizeInBits() == 16;
+            this.order = format.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            this.frameSize = source.getFormat().getFrameSize();
+            allocate(format.getFrameSize() * (int) format.getSampleRate());
         }
 
         @Override
         public AudioFormat getFormat() {
-            return this.source.getFormat();
+            return this.format;
         }
 
+        @Nullable
         @Override
         public ByteBuffer read(int size) throws IOException {
-            return this.source.read(size);
+            // The sound engine sizes its requests from the mono format so twice that is needed from the source
+            final ByteBuffer data = this.source.read(size << 1);
+            if (data == null)
+                return null;
+
+            final int frames = data.remaining() / this.frameSize;
+            final int length = frames * (this.frameSize >> 1);
+            if (this.output.capacity() < length)
+                allocate(length);
+
+            if (this.is16Bit) {
+                final int samples = frames << 1;
+                if (this.shorts.length < samples)
+                    this.shorts = new short[samples];
+                final short[] work = this.shorts;
+                data.slice().order(this.order).asShortBuffer().get(work, 0, samples);
+                downmix(work, 0, work, 0, frames);
+                this.outputShorts.clear();
+                this.outputShorts.put(work, 0, frames);
+            } else {
+                final int samples = frames << 1;
+                if (this.bytes.length < samples)
+                    this.bytes = new byte[samples];
+                final byte[] work = this.bytes;
+                data.slice().get(work, 0, samples);
+                downmix(work, 0, work, 0, frames);
+                this.output.clear();
+                this.output.put(work, 0, frames);
+            }
+
+            this.output.position(0);
+            this.output.limit(length);
+            return this.output;
+        }
+
+        private void allocate(final int capacity) {
+            this.output = BufferUtils.createByteBuffer(capacity).order(this.order);
+            this.outputShorts = this.output.asShortBuffer();
         }
 
         @Override
@@ -0,0 +1,170 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio;
+
+import com.mojang.blaze3d.audio.SoundBuffer;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.lwjgl.openal.AL10;
+import org.lwjgl.system.MemoryUtil;
+import org.orecruncher.lib.logging.IModLog;
+import org.orecruncher.sndctrl.SoundControl;
+import org.orecruncher.sndctrl.config.Config;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.OptionalInt;
+
+/**
+ * Mono versions of stereo sounds, keyed by the location of the sound file.  The sound engine keeps one buffer per
+ * sound file and converting it in place would change how the sound plays everywhere, so the mono version is built
+ * from a copy and uploaded to its own OpenAL buffer.  The original is left alone for sounds that play without
+ * attenuation.  The cache holds as many buffers as fit in the configured budget, dropping the least recently played
+ * first.  A dropped buffer that is still attached to a source cannot be deleted, so it is retried on later calls.
+ */
+@OnlyIn(Dist.CLIENT)
+public final class SoundBufferCache {
+
+    private static final IModLog LOGGER = SoundControl.LOGGER.createChild(SoundBufferCache.class);
+    private static final int MEGABYTE = 1024 * 1024;
+
+    private static final LinkedHashMap<ResourceLocation, Entry> cache = new LinkedHashMap<>(64, 0.75F, true);
+    private static final IntArrayList pendingDelete = new IntArrayList();
+
+    private static long bytes;
+    private static long hits;
+    private static long misses;
+    private static long evictions;
+
+    private SoundBufferCache() {
+    }
+
+    /**
+     * Gets the mono version of a sound, converting and caching it if needed.  Must be called from the sound thread.
+     *
+     * @param location Location of the sound file the buffer was loaded from
+     * @param buffer   The buffer the sound engine has for the sound file
+     * @return The mono buffer, or null if the sound could not be cached
+     */
+    @Nullable
+    public static synchronized SoundBuffer get(@Nonnull final ResourceLocation location, @Nonnull final SoundBuffer buffer) {
+        deletePending();
+
+        final Entry entry = cache.get(location);
+        if (entry != null) {
+            hits++;
+            return entry.buffer;
+        }
+
+        misses++;
+
+        // If the sound engine has already uploaded its buffer the data is gone
+        final ByteBuffer data = buffer.data;
+        if (data == null || !Conversion.canConvert(buffer.format))
+            return null;
+
+        final long budget = (long) Config.CLIENT.sound.monoCacheSize.get() * MEGABYTE;
+        final int size = data.remaining() >> 1;
+        if (size > budget)
+            return null;
+
+        final ByteBuffer copy = MemoryUtil.memAlloc(data.remaining());
+        try {
+            copy.put(data.duplicate()).flip();
+            final SoundBuffer mono = Conversion.convert(new SoundBuffer(copy, buffer.format));
+            final OptionalInt id = mono.getAlBuffer();
+            if (id.isEmpty())
+                return null;
+
+            evict(budget - size);
+            cache.put(location, new Entry(mono, id.getAsInt(), size));
+            bytes += size;
+            return mono;
+        } finally {
+            MemoryUtil.memFree(copy);
+        }
+    }
+
+    /**
+     * Releases all the cached buffers.  Called when the sound engine is shutting down, before the OpenAL context
+     * goes away.
+     */
+    public static synchronized void clear() {
+        for (final Entry entry : cache.values())
+            pendingDelete.add(entry.alBuffer);
+        cache.clear();
+        deletePending();
+        if (!pendingDelete.isEmpty()) {
+            LOGGER.warn("Unable to release %d sound buffers", pendingDelete.size());
+            pendingDelete.clear();
+        }
+        bytes = 0;
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    @Nonnull
+    public static synchronized String getDiagnosticString() {
+        return String.format("Mono Cache: %d buffers, %.1f/%dMB, %d hits, %d misses, %d evicted",
+                cache.size(), bytes / (double) MEGABYTE, Config.CLIENT.sound.monoCacheSize.get(), hits, misses, evictions);
+    }
+
+    private static void evict(final long target) {
+        final Iterator<Entry> itr = cache.values().iterator();
+        while (bytes > target && itr.hasNext()) {
+            final Entry entry = itr.next();
+            itr.remove();
+            bytes -= entry.size;
+            evictions++;
+            pendingDelete.add(entry.alBuffer);
+        }
+        deletePending();
+    }
+
+    private static void deletePending() {
+        if (pendingDelete.isEmpty())
+            return;
+
+        // Clear out any error left over from elsewhere so that failures can be attributed
+        AL10.alGetError();
+        for (int i = pendingDelete.size() - 1; i >= 0; i--) {
+            AL10.alDeleteBuffers(pendingDelete.getInt(i));
+            if (AL10.alGetError() == AL10.AL_NO_ERROR)
+                pendingDelete.removeInt(i);
+        }
+    }
+
+    private static final class Entry {
+        final SoundBuffer buffer;
+        final int alBuffer;
+        final int size;
+
+        Entry(@Nonnull final SoundBuffer buffer, final int alBuffer, final int size) {
+            this.buffer = buffer;
+            this.alBuffer = alBuffer;
+            this.size = size;
+        }
+    }
+}
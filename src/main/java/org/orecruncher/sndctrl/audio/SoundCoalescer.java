@@ -0,0 +1,159 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+
+package org.orecruncher.sndctrl.audio;
+
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceArraySet;
+import net.minecraft.client.resources.sounds.SoundInstance.Attenuation;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.sounds.SoundSource;
+import net.minecraft.util.Mth;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.TickCounter;
+import org.orecruncher.sndctrl.api.sound.ISoundInstance;
+import org.orecruncher.sndctrl.config.Config;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges identical sounds that are played close together in space and time.  Mob farms, redstone clocks, and the
+ * block effect scanners can play the same sound from dozens of nearby positions in the same tick.  Each of those
+ * would take a channel and go through the sound effect calculations even though the listener cannot tell them
+ * apart.  Sounds are grouped by resource and a small grid cell.  The first sound of a group plays right away and
+ * opens a short window; identical sounds that land in the same cell during the window are folded into it and do
+ * not play.  The sound that plays is left as is so its gain and attenuation range are what the caller asked for.
+ */
+@OnlyIn(Dist.CLIENT)
+final class SoundCoalescer {
+
+    // Size of a grid cell in blocks, as a power of 2
+    private static final int CELL_SHIFT = 2;
+
+    // Players and music are left alone since a missing play would be noticed
+    private static final Set<SoundSource> NOT_COALESCED = new ReferenceArraySet<>(5);
+
+    static {
+        NOT_COALESCED.add(SoundSource.MASTER);
+        NOT_COALESCED.add(SoundSource.MUSIC);
+        NOT_COALESCED.add(SoundSource.RECORDS);
+        NOT_COALESCED.add(SoundSource.PLAYERS);
+        NOT_COALESCED.add(SoundSource.VOICE);
+    }
+
+    // Tick at which the window of each cell closes, by sound resource
+    private static final Map<ResourceLocation, Long2LongOpenHashMap> cells = new Object2ObjectOpenHashMap<>();
+
+    private static int openCount;
+    private static long mergedCount;
+
+    private SoundCoalescer() {
+    }
+
+    /**
+     * Checks whether the sound falls in the window of an identical sound that was played nearby.  If so the sound is
+     * considered merged into the one that played and is marked done.
+     *
+     * @param sound Sound that is to be played
+     * @return true if the sound was merged and should not be played; false otherwise
+     */
+    static boolean merge(@Nonnull final ISoundInstance sound) {
+        if (Config.CLIENT.sound.coalesceWindow.get() == 0 || !canCoalesce(sound))
+            return false;
+
+        final Long2LongOpenHashMap windows = cells.get(sound.getLocation());
+        if (windows == null)
+            return false;
+
+        final long closeTick = windows.getOrDefault(getKey(sound), -1L);
+        if (closeTick < TickCounter.getTickCount())
+            return false;
+
+        sound.setState(SoundState.DONE);
+        mergedCount++;
+        return true;
+    }
+
+    /**
+     * Opens a window for a sound that was handed to the sound engine.  Identical sounds played nearby until the window
+     * closes will be merged into it.
+     *
+     * @param sound Sound that was played
+     */
+    static void played(@Nonnull final ISoundInstance sound) {
+        final int window = Config.CLIENT.sound.coalesceWindow.get();
+        if (window == 0 || !canCoalesce(sound))
+            return;
+
+        final Long2LongOpenHashMap windows = cells.computeIfAbsent(sound.getLocation(), k -> new Long2LongOpenHashMap());
+        final long key = getKey(sound);
+        if (!windows.containsKey(key))
+            openCount++;
+        windows.put(key, TickCounter.getTickCount() + window - 1);
+    }
+
+    /**
+     * Closes the windows that have run their course.
+     */
+    static void expire() {
+        if (openCount == 0)
+            return;
+
+        final long tick = TickCounter.getTickCount();
+        cells.values().removeIf(windows -> {
+            final int size = windows.size();
+            windows.long2LongEntrySet().removeIf(e -> e.getLongValue() < tick);
+            openCount -= size - windows.size();
+            return windows.isEmpty();
+        });
+    }
+
+    /**
+     * Closes all windows.
+     */
+    static void clear() {
+        cells.clear();
+        openCount = 0;
+    }
+
+    static String getDiagnosticString() {
+        return String.format("Coalescer: %d open, %d merged", openCount, mergedCount);
+    }
+
+    private static long getKey(@Nonnull final ISoundInstance sound) {
+        return BlockPos.asLong(
+                Mth.floor(sound.getX()) >> CELL_SHIFT,
+                Mth.floor(sound.getY()) >> CELL_SHIFT,
+                Mth.floor(sound.getZ()) >> CELL_SHIFT);
+    }
+
+    private static boolean canCoalesce(@Nonnull final ISoundInstance sound) {
+        // Sounds that are tracked over time or tied to the listener have to play as they are
+        if (sound.isLooping() || sound.isDelayed() || sound.isRelative())
+            return false;
+        if (sound.getAttenuation() != Attenuation.LINEAR)
+            return false;
+        return !NOT_COALESCED.contains(sound.getSource());
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio;
+
+import com.mojang.blaze3d.audio.SoundBuffer;
+import it.unimi.dsi.fastutil.objects.ObjectArrayFIFOQueue;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.client.resources.sounds.Sound;
+import net.minecraft.client.sounds.SoundEngine;
+import net.minecraft.client.sounds.WeighedSoundEvents;
+import net.minecraft.client.sounds.Weighted;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.LogicalSide;
+import org.orecruncher.lib.GameUtils;
+import org.orecruncher.lib.logging.IModLog;
+import org.orecruncher.sndctrl.SoundControl;
+import org.orecruncher.sndctrl.api.acoustics.IAcoustic;
+import org.orecruncher.sndctrl.config.Config;
+import org.orecruncher.sndctrl.misc.IMixinSoundEngine;
+import org.orecruncher.sndctrl.misc.IMixinWeighedSoundEvents;
+
+import javax.annotation.Nonnull;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Loads sounds ahead of their first play.  Handlers that can predict what they are going to play, like the biome
+ * survey or the block scanners, hint the acoustics involved.  The sound files behind them are requested from the
+ * sound engine's buffer library, which decodes on a background thread, and positioned sounds are then converted
+ * into the mono cache on the sound thread.  Without this the first play of a sound waits on the decode.  Hints are
+ * only taken on the client thread.
+ */
+@OnlyIn(Dist.CLIENT)
+public final class SoundPrefetcher {
+
+    private static final IModLog LOGGER = SoundControl.LOGGER.createChild(SoundPrefetcher.class);
+
+    // Sound events resolved per tick.  Decoding is off thread but there is no sense in queueing it all at once.
+    private static final int MAX_EVENTS_PER_TICK = 4;
+
+    private static final Set<IAcoustic> hinted = new ReferenceOpenHashSet<>();
+    private static final Set<IAcoustic> hintedPositioned = new ReferenceOpenHashSet<>();
+    private static final Set<ResourceLocation> queued = new ObjectOpenHashSet<>();
+    private static final Set<ResourceLocation> queuedPositioned = new ObjectOpenHashSet<>();
+    private static final ObjectArrayFIFOQueue<Request> pending = new ObjectArrayFIFOQueue<>();
+    private static final Consumer<ResourceLocation> QUEUE = evt -> queue(evt, false);
+    private static final Consumer<ResourceLocation> QUEUE_POSITIONED = evt -> queue(evt, true);
+
+    private static int filesRequested;
+
+    private SoundPrefetcher() {
+    }
+
+    public static void initialize() {
+        MinecraftForge.EVENT_BUS.register(SoundPrefetcher.class);
+    }
+
+    /**
+     * Hints that the acoustic will be played at a position in the world soon.  The sounds are decoded and converted
+     * to mono.
+     *
+     * @param acoustic The acoustic that is likely to play
+     */
+    public static void hint(@Nonnull final IAcoustic acoustic) {
+        if (hintedPositioned.add(acoustic))
+            acoustic.forEachSound(QUEUE_POSITIONED);
+    }
+
+    /**
+     * Hints that the acoustic will be played without attenuation soon, like a background sound.  The sounds are only
+     * decoded.
+     *
+     * @param acoustic The acoustic that is likely to play
+     */
+    public static void hintBackground(@Nonnull final IAcoustic acoustic) {
+        if (hinted.add(acoustic))
+            acoustic.forEachSound(QUEUE);
+    }
+
+    /**
+     * Forgets everything that has been prefetched.  Called when the sound engine shuts down since it drops its
+     * buffers as well.
+     */
+    public static void clear() {
+        hinted.clear();
+        hintedPositioned.clear();
+        queued.clear();
+        queuedPositioned.clear();
+        pending.clear();
+        filesRequested = 0;
+    }
+
+    @Nonnull
+    static String getDiagnosticString() {
+        return String.format("Prefetch: %d events, %d files requested, %d pending", queued.size() + queuedPositioned.size(), filesRequested, pending.size());
+    }
+
+    private static void queue(@Nonnull final ResourceLocation soundEvent, final boolean positioned) {
+        if ((positioned ? queuedPositioned : queued).add(soundEvent))
+            pending.enqueue(new Request(soundEvent, positioned));
+    }
+
+    @SubscribeEvent
+    public static void onClientTick(@Nonnull final TickEvent.ClientTickEvent event) {
+        if (event.side != LogicalSide.CLIENT || event.phase != TickEvent.Phase.END || pending.isEmpty())
+            return;
+
+        final SoundEngine engine = GameUtils.getSoundHander().soundEngine;
+        if (!engine.loaded)
+            return;
+
+        final boolean convert = Config.CLIENT.sound.enableMonoConversion.get() && Config.CLIENT.sound.monoCacheSize.get() > 0;
+        for (int i = 0; i < MAX_EVENTS_PER_TICK && !pending.isEmpty(); i++) {
+            final Request request = pending.dequeue();
+            final WeighedSoundEvents accessor = GameUtils.getSoundHander().getSoundEvent(request.soundEvent);
+            if (accessor == null)
+                continue;
+            for (final Weighted<Sound> entry : ((IMixinWeighedSoundEvents) accessor).getEntries()) {
+                // Entries that reference other sound events pick one of their sounds at random.  Each hint
+                // gets one, which is better than nothing.
+                final Sound sound = entry.getSound();
+                if (sound != null && !sound.shouldStream())
+                    request(engine, sound, convert && request.positioned);
+            }
+        }
+    }
+
+    private static void request(@Nonnull final SoundEngine engine, @Nonnull final Sound sound, final boolean convert) {
+        final IMixinSoundEngine access = (IMixinSoundEngine) engine;
+        final ResourceLocation path = sound.getPath();
+        filesRequested++;
+        access.getSoundBuffers().getCompleteBuffer(path).thenAcceptAsync(buffer -> {
+            if (convert)
+                convert(path, buffer);
+        }, access.getExecutor());
+    }
+
+    private static void convert(@Nonnull final ResourceLocation path, @Nonnull final SoundBuffer buffer) {
+        try {
+            SoundBufferCache.get(path, buffer);
+        } catch (@Nonnull final Throwable t) {
+            LOGGER.warn("Unable to convert %s ahead of play: %s", path, t.getMessage());
+        }
+    }
+
+    private static final class Request {
+        final ResourceLocation soundEvent;
+        final boolean positioned;
+
+        Request(@Nonnull final ResourceLocation soundEvent, final boolean positioned) {
+            this.soundEvent = soundEvent;
+            this.positioned = positioned;
+        }
+    }
+}
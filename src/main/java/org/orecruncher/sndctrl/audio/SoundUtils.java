@@ -36,6 +36,7 @@ import org.orecruncher.sndctrl.audio.handlers.SoundFXProcessor;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
 
@@ -76,10 +77,17 @@ public final class SoundUtils {
         for (final SoundSource sc : SoundSource.values())
             categoryMapper.put(sc.getName(), sc);
 
-        final SoundEngine engine = GameUtils.getSoundHander().soundEngine;
-        playing = engine.instanceToChannel;
-        delayed = engine.queuedSounds;
-        listener = engine.listener;
+        // There is no sound engine when running outside of the client, like benchmarks
+        if (GameUtils.getMC() != null) {
+            final SoundEngine engine = GameUtils.getSoundHander().soundEngine;
+            playing = engine.instanceToChannel;
+            delayed = engine.queuedSounds;
+            listener = engine.listener;
+        } else {
+            playing = Collections.emptyMap();
+            delayed = Collections.emptyMap();
+            listener = null;
+        }
     }
 
     private SoundUtils() {
@@ -89,8 +97,8 @@ public final class SoundUtils {
         return MAX_SOUNDS;
     }
 
-    public static boolean hasRoom() {
-        return getTotalPlaying() < SOUND_LIMIT;
+    static int getSoundLimit() {
+        return SOUND_LIMIT;
     }
 
     static int getTotalPlaying() {
@@ -275,6 +283,8 @@ public final class SoundUtils {
 
     public static void deinitialize(@Nonnull final Library soundSystem) {
         SoundFXProcessor.deinitialize();
+        SoundBufferCache.clear();
+        SoundPrefetcher.clear();
     }
 
 }
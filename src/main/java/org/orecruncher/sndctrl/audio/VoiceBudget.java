@@ -0,0 +1,257 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio;
+
+import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.client.resources.sounds.AbstractSoundInstance;
+import net.minecraft.client.resources.sounds.Sound;
+import net.minecraft.client.resources.sounds.SoundInstance;
+import net.minecraft.sounds.SoundSource;
+import net.minecraft.world.phys.Vec3;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.eventbus.api.EventPriority;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.config.ModConfig;
+import org.orecruncher.lib.GameUtils;
+import org.orecruncher.lib.TickCounter;
+import org.orecruncher.lib.logging.IModLog;
+import org.orecruncher.sndctrl.SoundControl;
+import org.orecruncher.sndctrl.audio.handlers.MusicFader;
+import org.orecruncher.sndctrl.config.Config;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hands out voices in the sound engine.  When the engine is at its limit, or a category is at its cap, the least
+ * important playing sound is stopped to make room for a more important one rather than refusing the new sound.
+ * Importance is the priority of the category scaled by how loud the sound is at the listener, with one shot sounds
+ * counting for less the longer they have been playing since they are likely close to done.  Age stands in for the
+ * time a sound has left since the length of its buffer is not known until it has been loaded off thread.  Priorities
+ * and caps are configured per category with entries of the form "category priority cap", where a cap of 0 means no
+ * cap.  Admission happens inside the sound engine once it has committed to playing the sound, so sounds the engine
+ * would drop anyway never cost another sound its voice.
+ */
+@Mod.EventBusSubscriber(modid = SoundControl.MOD_ID, value = Dist.CLIENT, bus = Mod.EventBusSubscriber.Bus.MOD)
+public final class VoiceBudget {
+
+    private static final IModLog LOGGER = SoundControl.LOGGER.createChild(VoiceBudget.class);
+    private static final String DELIMITER = " ";
+    private static final SoundSource[] CATEGORIES = SoundSource.values();
+
+    // Used for categories that do not have an entry in the config
+    private static final int DEFAULT_PRIORITY = 50;
+    // Stopped sounds hold on to their channel until the engine cleans up after them, which is covered by the
+    // headroom the sound limit leaves.  Stealing more than that in a tick would leave new sounds without a channel.
+    private static final int MAX_STEALS_PER_TICK = 8;
+    // Ticks for a one shot sound to lose half of its importance
+    private static final float AGE_HALF_LIFE = 40F;
+    // Keeps distant sounds ordered by priority rather than all being equal
+    private static final float MIN_AUDIBILITY = 0.01F;
+    // Same as the engine when the sound has not been resolved
+    private static final float DEFAULT_ATTENUATION_DISTANCE = 16F;
+
+    private static final int[] priorities = new int[CATEGORIES.length];
+    private static final int[] caps = new int[CATEGORIES.length];
+    private static final int[] counts = new int[CATEGORIES.length];
+
+    private static final Reference2LongOpenHashMap<SoundInstance> started = new Reference2LongOpenHashMap<>(256);
+    private static final Set<SoundInstance> stolen = new ReferenceOpenHashSet<>();
+
+    private static long lastRefresh = -1;
+    private static int total;
+    private static int stealsThisTick;
+    private static long stealCount;
+    private static long refusedCount;
+
+    static {
+        Arrays.fill(priorities, DEFAULT_PRIORITY);
+    }
+
+    private VoiceBudget() {
+    }
+
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public static void onConfigLoad(@Nonnull final ModConfig.Loading configEvent) {
+        applyConfig();
+    }
+
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public static void onConfigChange(@Nonnull final ModConfig.Reloading configEvent) {
+        applyConfig();
+    }
+
+    public static void applyConfig() {
+        Arrays.fill(priorities, DEFAULT_PRIORITY);
+        Arrays.fill(caps, 0);
+        for (final String entry : Config.CLIENT.sound.voiceLimits.get()) {
+            final String[] parts = entry.trim().split(DELIMITER);
+            try {
+                if (parts.length != 3)
+                    throw new IllegalArgumentException("Expected 3 tokens");
+                final SoundSource category = SoundUtils.getSoundCategory(parts[0]);
+                if (category == null)
+                    throw new IllegalArgumentException("Unknown category");
+                final int priority = Integer.parseInt(parts[1]);
+                final int cap = Integer.parseInt(parts[2]);
+                if (priority < 0 || cap < 0)
+                    throw new IllegalArgumentException("Values cannot be negative");
+                priorities[category.ordinal()] = priority;
+                caps[category.ordinal()] = cap;
+            } catch (@Nonnull final Throwable t) {
+                LOGGER.warn("Invalid voice limit entry '%s': %s", entry, t.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Decides whether the sound gets a voice, stopping a less important sound if needed.  Called by the sound engine
+     * right before it creates a channel for the sound.
+     *
+     * @param sound The sound that is about to be played
+     * @return true if the sound can play; false if there is no room for it
+     */
+    public static boolean admit(@Nonnull final SoundInstance sound) {
+        refresh();
+
+        final int category = sound.getSource().ordinal();
+        // Sounds played from the config menu are for the user so always get a voice
+        if (MusicFader.isConfigSoundInstance(sound)) {
+            claim(category);
+            return true;
+        }
+
+        final boolean overCap = caps[category] > 0 && counts[category] >= caps[category];
+        if (!overCap && total < SoundUtils.getSoundLimit()) {
+            claim(category);
+            return true;
+        }
+
+        if (stealsThisTick < MAX_STEALS_PER_TICK) {
+            final Vec3 listener = GameUtils.getMC().gameRenderer.getMainCamera().getPosition();
+            final long tick = TickCounter.getTickCount();
+            final SoundInstance victim = findVictim(listener, tick, overCap ? sound.getSource() : null);
+            if (victim != null && score(victim, listener, tick) < score(sound, listener, tick)) {
+                LOGGER.debug(Config.Flags.SOUND_PLAY, () -> String.format("STOLEN: [%s] for [%s]", SoundUtils.debugString(victim), SoundUtils.debugString(sound)));
+                GameUtils.getSoundHander().stop(victim);
+                stolen.add(victim);
+                counts[victim.getSource().ordinal()]--;
+                total--;
+                stealsThisTick++;
+                stealCount++;
+                claim(category);
+                return true;
+            }
+        }
+
+        refusedCount++;
+        return false;
+    }
+
+    /**
+     * Notes the time a sound started playing for aging.
+     */
+    static void onPlay(@Nonnull final SoundInstance sound) {
+        started.put(sound, TickCounter.getTickCount());
+    }
+
+    @Nonnull
+    static String getDiagnosticString() {
+        return String.format("Voices: %d stolen, %d refused", stealCount, refusedCount);
+    }
+
+    private static void claim(final int category) {
+        counts[category]++;
+        total++;
+    }
+
+    /**
+     * Recounts the voices in use the first time through on a tick.  During the tick the counts are kept up to date
+     * as sounds are admitted and stolen.
+     */
+    private static void refresh() {
+        final long tick = TickCounter.getTickCount();
+        if (tick == lastRefresh)
+            return;
+        lastRefresh = tick;
+        stealsThisTick = 0;
+
+        final Map<SoundInstance, ?> playing = SoundUtils.getPlayingSounds();
+        stolen.removeIf(s -> !playing.containsKey(s));
+        if (started.size() > playing.size() * 2 + 64)
+            started.keySet().removeIf(s -> !playing.containsKey(s));
+
+        Arrays.fill(counts, 0);
+        for (final SoundInstance s : playing.keySet()) {
+            if (!stolen.contains(s))
+                counts[s.getSource().ordinal()]++;
+        }
+        total = playing.size() - stolen.size();
+    }
+
+    @Nullable
+    private static SoundInstance findVictim(@Nonnull final Vec3 listener, final long tick, @Nullable final SoundSource category) {
+        SoundInstance victim = null;
+        float lowest = Float.MAX_VALUE;
+        for (final SoundInstance s : SoundUtils.getPlayingSounds().keySet()) {
+            if (category != null && s.getSource() != category)
+                continue;
+            // Streams have their own channels and are usually music, and config sounds are for the user
+            final Sound sound = s.getSound();
+            if (sound == null || sound.shouldStream() || stolen.contains(s) || MusicFader.isConfigSoundInstance(s))
+                continue;
+            final float score = score(s, listener, tick);
+            if (score < lowest) {
+                lowest = score;
+                victim = s;
+            }
+        }
+        return victim;
+    }
+
+    private static float score(@Nonnull final SoundInstance sound, @Nonnull final Vec3 listener, final long tick) {
+        float result = priorities[sound.getSource().ordinal()] * audibility(sound, listener);
+        if (!sound.isLooping()) {
+            // Sounds that have yet to start have no age
+            final long age = tick - started.getOrDefault(sound, tick);
+            result /= 1F + age / AGE_HALF_LIFE;
+        }
+        return result;
+    }
+
+    /**
+     * Approximates the gain of the sound at the listener the same way the engine attenuates.  Sounds that have not
+     * been resolved, such as one that is about to play, use the raw volume and the default distance.
+     */
+    private static float audibility(@Nonnull final SoundInstance sound, @Nonnull final Vec3 listener) {
+        final float volume = sound instanceof AbstractSoundInstance ? Math.min(((AbstractSoundInstance) sound).volume, 1F) : 1F;
+        if (sound.isRelative() || sound.getAttenuation() == SoundInstance.Attenuation.NONE)
+            return Math.max(volume, MIN_AUDIBILITY);
+
+        final Sound resolved = sound.getSound();
+        final float range = Math.max(volume, 1F) * (resolved != null ? resolved.getAttenuationDistance() : DEFAULT_ATTENUATION_DISTANCE);
+        final double distance = listener.distanceTo(new Vec3(sound.getX(), sound.getY(), sound.getZ()));
+        return Math.max(volume * (float) Math.max(1D - distance / range, 0D), MIN_AUDIBILITY);
+    }
+}
@@ -34,6 +34,7 @@ import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * An acoustic that will play different sounds based on the AcousticEvent provided.  For example, for a given
@@ -95,6 +96,12 @@ public class EventSelectorAcoustic implements IAcoustic {
         return resolve(event).map(IAcoustic::getFactory).orElse(null);
     }
 
+    @Override
+    public void forEachSound(@Nonnull final Consumer<ResourceLocation> consumer) {
+        for (final IAcoustic a : this.mapping.values())
+            a.forEachSound(consumer);
+    }
+
     @Nonnull
     protected Optional<IAcoustic> resolve(@Nonnull final AcousticEvent event) {
         IAcoustic acoustic = this.mapping.get(event);
@@ -33,6 +33,7 @@ import org.orecruncher.sndctrl.api.acoustics.IAcousticFactory;
 import javax.annotation.Nonnull;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 /**
  * Plays a random acoustic from a weighted list of selections.
@@ -102,6 +103,11 @@ public class ProbabilityAcoustic implements IAcoustic {
         return select().map(IAcoustic::getFactory).orElse(null);
     }
 
+    @Override
+    public void forEachSound(@Nonnull final Consumer<ResourceLocation> consumer) {
+        this.table.forEach(a -> a.forEachSound(consumer));
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this).addValue(getName().toString()).add("entries", this.table.size()).toString();
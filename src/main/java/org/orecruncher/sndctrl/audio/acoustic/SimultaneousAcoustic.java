@@ -32,6 +32,7 @@ import org.orecruncher.sndctrl.api.acoustics.IAcousticFactory;
 
 import javax.annotation.Nonnull;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 /**
  * Plays a group of acoustics simultaneously creating a composite effect
@@ -107,6 +108,12 @@ public class SimultaneousAcoustic implements IAcoustic {
         return null;
     }
 
+    @Override
+    public void forEachSound(@Nonnull final Consumer<ResourceLocation> consumer) {
+        for (final IAcoustic a : this.acoustics)
+            a.forEachSound(consumer);
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this).addValue(getName().toString()).add("entries", this.acoustics.size()).toString();
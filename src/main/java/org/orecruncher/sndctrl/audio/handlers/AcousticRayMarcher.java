@@ -0,0 +1,291 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import net.minecraft.world.level.ClipContext;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.math.MathStuff;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Voxel (DDA) ray marcher that works against an AcousticSnapshot.  All of the math is done with primitives, and the
+ * result of a trace is reported through a Hit instance that is reused for every trace made by the marcher.  Each
+ * thread gets its own marcher so there is no allocation per ray.
+ */
+@OnlyIn(Dist.CLIENT)
+public final class AcousticRayMarcher {
+
+    private static final ThreadLocal<AcousticRayMarcher> MARCHERS = ThreadLocal.withInitial(AcousticRayMarcher::new);
+
+    private final Hit hit = new Hit();
+
+    // Scratch state for slab intersection tests
+    private double tNear;
+    private double tFar;
+    private int nearAxis;
+    private int farAxis;
+
+    private AcousticRayMarcher() {
+    }
+
+    /**
+     * Gets the ray marcher for the calling thread.
+     */
+    @Nonnull
+    public static AcousticRayMarcher get() {
+        return MARCHERS.get();
+    }
+
+    /**
+     * Result of the last trace performed by this marcher.  The content is overwritten by each trace.
+     */
+    @Nonnull
+    public Hit hit() {
+        return this.hit;
+    }
+
+    /**
+     * Traces the line segment between the start and end points looking for the first cell whose shape is hit.
+     *
+     * @param world Snapshot to trace against
+     * @param mode  Which shape to consider when tracing, COLLIDER or VISUAL
+     * @return true if something was hit; false otherwise.  Details of the hit are in hit().  On a miss, hit() reports
+     * whether the segment was lost by leaving the snapshot somewhere other than open sky.
+     */
+    public boolean trace(@Nonnull final AcousticSnapshot world, @Nonnull final ClipContext.Block mode,
+                         final double startX, final double startY, final double startZ,
+                         final double endX, final double endY, final double endZ) {
+
+        final Hit result = this.hit;
+        result.isHit = false;
+        result.lost = false;
+
+        final double lenX = endX - startX;
+        final double lenY = endY - startY;
+        final double lenZ = endZ - startZ;
+
+        if (lenX == 0 && lenY == 0 && lenZ == 0)
+            return false;
+
+        // Nothing is known about what lies outside of the snapshot so limit the march to the portion of the segment
+        // inside.  Leaving through the top or bottom means leaving the world, as does leaving through a side with
+        // nothing overhead.  Anywhere else the segment is cut short and the caller is told it was lost.
+        final double limit = clipToVolume(world, startX, startY, startZ, lenX, lenY, lenZ);
+        if (limit < 0)
+            return false;
+        final boolean cutShort = limit < 1 && this.farAxis != 1;
+
+        int posX = MathStuff.floor(startX);
+        int posY = MathStuff.floor(startY);
+        int posZ = MathStuff.floor(startZ);
+
+        final int dirX = lenX > 0 ? 1 : (lenX < 0 ? -1 : 0);
+        final int dirY = lenY > 0 ? 1 : (lenY < 0 ? -1 : 0);
+        final int dirZ = lenZ > 0 ? 1 : (lenZ < 0 ? -1 : 0);
+
+        // Parametric distance to cross a full cell along each axis
+        final double deltaX = dirX == 0 ? Double.MAX_VALUE : dirX / lenX;
+        final double deltaY = dirY == 0 ? Double.MAX_VALUE : dirY / lenY;
+        final double deltaZ = dirZ == 0 ? Double.MAX_VALUE : dirZ / lenZ;
+
+        // Parametric distance to the first cell boundary along each axis
+        double tX = dirX == 0 ? Double.MAX_VALUE : deltaX * (dirX > 0 ? (posX + 1 - startX) : (startX - posX));
+        double tY = dirY == 0 ? Double.MAX_VALUE : deltaY * (dirY > 0 ? (posY + 1 - startY) : (startY - posY));
+        double tZ = dirZ == 0 ? Double.MAX_VALUE : deltaZ * (dirZ > 0 ? (posZ + 1 - startZ) : (startZ - posZ));
+
+        while (true) {
+            if (clipCell(world, mode, posX, posY, posZ, startX, startY, startZ, lenX, lenY, lenZ))
+                return true;
+
+            // Advance along the axis with the closest boundary
+            final double t;
+            if (tX < tY) {
+                if (tX < tZ) {
+                    t = tX;
+                    posX += dirX;
+                    tX += deltaX;
+                } else {
+                    t = tZ;
+                    posZ += dirZ;
+                    tZ += deltaZ;
+                }
+            } else if (tY < tZ) {
+                t = tY;
+                posY += dirY;
+                tY += deltaY;
+            } else {
+                t = tZ;
+                posZ += dirZ;
+                tZ += deltaZ;
+            }
+
+            // Reached the end of the line?
+            if (t > limit) {
+                if (cutShort) {
+                    // Step back a hair so the exit point falls in the last cell inside the volume
+                    final double exit = limit - 1e-6D;
+                    result.lost = world.isCovered(MathStuff.floor(startX + lenX * exit), MathStuff.floor(startY + lenY * exit), MathStuff.floor(startZ + lenZ * exit));
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Determines how much of the segment, parametrically, lies within the snapshot volume.
+     *
+     * @return Parametric exit point of the segment from the volume capped at 1, or -1 if the volume is not touched
+     */
+    private double clipToVolume(@Nonnull final AcousticSnapshot world, final double startX, final double startY, final double startZ, final double lenX, final double lenY, final double lenZ) {
+        this.tNear = 0;
+        this.tFar = 1;
+        this.farAxis = -1;
+        if (clipAxis(startX, lenX, world.minX(), world.maxX(), 0)
+                && clipAxis(startY, lenY, world.minY(), world.maxY(), 1)
+                && clipAxis(startZ, lenZ, world.minZ(), world.maxZ(), 2))
+            return this.tFar;
+        return -1;
+    }
+
+    /**
+     * Intersects the segment with the shape bounds of the specified cell.  On a hit the result is populated.
+     */
+    private boolean clipCell(@Nonnull final AcousticSnapshot world, @Nonnull final ClipContext.Block mode,
+                             final int x, final int y, final int z,
+                             final double startX, final double startY, final double startZ,
+                             final double lenX, final double lenY, final double lenZ) {
+
+        final AcousticSection section = world.section(x, y, z);
+        final double[] bounds = section.getBounds(mode);
+        final int idx = section.paletteIndex(x & 15, y & 15, z & 15) * AcousticSection.BOUNDS_STRIDE;
+
+        // Quick out for cells that cannot be hit, like air
+        if (bounds[idx] > bounds[idx + 3])
+            return false;
+
+        this.tNear = Double.NEGATIVE_INFINITY;
+        this.tFar = Double.POSITIVE_INFINITY;
+        this.nearAxis = -1;
+
+        if (!clipAxis(startX, lenX, x + bounds[idx], x + bounds[idx + 3], 0)
+                || !clipAxis(startY, lenY, y + bounds[idx + 1], y + bounds[idx + 4], 1)
+                || !clipAxis(startZ, lenZ, z + bounds[idx + 2], z + bounds[idx + 5], 2))
+            return false;
+
+        if (this.tFar < 0 || this.tNear > 1)
+            return false;
+
+        double t = this.tNear;
+        int faceAxis = this.nearAxis;
+
+        if (t < 0) {
+            // Started inside the shape.  Report the hit at the start against the face opposite of travel.
+            t = 0;
+            final double absX = Math.abs(lenX);
+            final double absY = Math.abs(lenY);
+            final double absZ = Math.abs(lenZ);
+            if (absX >= absY && absX >= absZ)
+                faceAxis = 0;
+            else if (absY >= absZ)
+                faceAxis = 1;
+            else
+                faceAxis = 2;
+        }
+
+        final Hit result = this.hit;
+        result.isHit = true;
+        result.blockX = x;
+        result.blockY = y;
+        result.blockZ = z;
+        result.normalX = faceAxis == 0 ? (lenX > 0 ? -1 : 1) : 0;
+        result.normalY = faceAxis == 1 ? (lenY > 0 ? -1 : 1) : 0;
+        result.normalZ = faceAxis == 2 ? (lenZ > 0 ? -1 : 1) : 0;
+        result.x = startX + lenX * t;
+        result.y = startY + lenY * t;
+        result.z = startZ + lenZ * t;
+        return true;
+    }
+
+    /**
+     * Slab test of the segment against a single axis of a box, narrowing tNear/tFar.
+     *
+     * @return false if the segment cannot intersect the box; true otherwise
+     */
+    private boolean clipAxis(final double start, final double len, final double min, final double max, final int axis) {
+        if (len == 0)
+            return start >= min && start <= max;
+
+        double t1 = (min - start) / len;
+        double t2 = (max - start) / len;
+        if (t1 > t2) {
+            final double tmp = t1;
+            t1 = t2;
+            t2 = tmp;
+        }
+        if (t1 > this.tNear) {
+            this.tNear = t1;
+            this.nearAxis = axis;
+        }
+        if (t2 < this.tFar) {
+            this.tFar = t2;
+            this.farAxis = axis;
+        }
+        return this.tNear <= this.tFar;
+    }
+
+    /**
+     * Details of the last hit made by an AcousticRayMarcher.  Only valid until the next trace.
+     */
+    public static final class Hit {
+        public boolean isHit;
+        // Set on a miss when the segment left the snapshot under cover, so where it would have ended is not known
+        public boolean lost;
+        // Location of the hit
+        public double x;
+        public double y;
+        public double z;
+        // Block that was hit
+        public int blockX;
+        public int blockY;
+        public int blockZ;
+        // Normal of the surface that was hit
+        public int normalX;
+        public int normalY;
+        public int normalZ;
+
+        private Hit() {
+        }
+
+        /**
+         * Calculates the squared distance from the hit to the specified point.
+         */
+        public double distanceSq(final double px, final double py, final double pz) {
+            final double dx = px - this.x;
+            final double dy = py - this.y;
+            final double dz = pz - this.z;
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        public double distance(final double px, final double py, final double pz) {
+            return Math.sqrt(distanceSq(px, py, pz));
+        }
+    }
+}
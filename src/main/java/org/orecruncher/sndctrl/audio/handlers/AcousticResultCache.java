@@ -0,0 +1,199 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import net.minecraft.core.BlockPos;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the geometric portion of the sound effect calculation.  Results are keyed by the block cell
+ * of the sound, the block cell of the listener, the revision of the acoustic snapshot they were traced against, and
+ * the options that affect the trace.  Each result records the bounds of the blocks that were hit so that block updates
+ * inside them can drop it.  Rays that did not hit anything are not part of those bounds, so a change out in the open,
+ * like a roof going up, is only picked up once the result ages out.  Stationary sounds, like furnaces and waterfalls, can then reuse the result of a prior
+ * trace rather than casting all the rays again.  Access is synchronized since the cache is shared by the sound
+ * processing threads and the client thread.
+ */
+@OnlyIn(Dist.CLIENT)
+final class AcousticResultCache {
+
+    private static final int MAX_ENTRIES = 512;
+    // Results older than this are traced again
+    private static final long MAX_AGE_NANOS = 3_000_000_000L;
+
+    private final LinkedHashMap<Key, Result> cache = new LinkedHashMap<>(MAX_ENTRIES, 0.75F, true) {
+        @Override
+        protected boolean removeEldestEntry(@Nonnull final Map.Entry<Key, Result> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private long hits;
+    private long misses;
+
+    @Nullable
+    public synchronized Result get(final long sourceCell, final long listenerCell, final int revision, final boolean occlusion, @Nonnull final TraceDetail detail) {
+        final Key key = new Key(sourceCell, listenerCell, revision, occlusion, detail);
+        Result result = this.cache.get(key);
+        if (result != null && System.nanoTime() - result.created > MAX_AGE_NANOS) {
+            this.cache.remove(key);
+            result = null;
+        }
+        if (result == null)
+            this.misses++;
+        else
+            this.hits++;
+        return result;
+    }
+
+    public synchronized void put(final long sourceCell, final long listenerCell, final int revision, final boolean occlusion, @Nonnull final TraceDetail detail, @Nonnull final Result result) {
+        this.cache.put(new Key(sourceCell, listenerCell, revision, occlusion, detail), result);
+    }
+
+    /**
+     * Drops all results whose traced volume contains one of the specified positions.
+     *
+     * @param positions Block positions that have changed
+     */
+    public synchronized void invalidate(@Nonnull final Collection<BlockPos> positions) {
+        if (this.cache.isEmpty())
+            return;
+        for (final Iterator<Result> itr = this.cache.values().iterator(); itr.hasNext(); ) {
+            final Result result = itr.next();
+            for (final BlockPos pos : positions) {
+                if (result.contains(pos)) {
+                    itr.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        this.cache.clear();
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    @Nonnull
+    public synchronized String getDiagnosticString() {
+        return String.format("Acoustic Cache: %d entries, %d hits, %d misses", this.cache.size(), this.hits, this.misses);
+    }
+
+    private static final class Key {
+        private final long sourceCell;
+        private final long listenerCell;
+        private final int revision;
+        private final boolean occlusion;
+        private final TraceDetail detail;
+        private final int hash;
+
+        Key(final long sourceCell, final long listenerCell, final int revision, final boolean occlusion, @Nonnull final TraceDetail detail) {
+            this.sourceCell = sourceCell;
+            this.listenerCell = listenerCell;
+            this.revision = revision;
+            this.occlusion = occlusion;
+            this.detail = detail;
+
+            int h = Long.hashCode(sourceCell);
+            h = h * 31 + Long.hashCode(listenerCell);
+            h = h * 31 + revision;
+            h = h * 31 + (occlusion ? 1 : 0);
+            this.hash = h * 31 + detail.ordinal();
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            final Key k = (Key) obj;
+            return this.sourceCell == k.sourceCell && this.listenerCell == k.listenerCell && this.revision == k.revision && this.occlusion == k.occlusion && this.detail == k.detail;
+        }
+    }
+
+    /**
+     * Listener independent output of a trace.  Dampening caused by the player's head being in a fluid is applied
+     * after the fact since it can change without either party moving.
+     */
+    static final class Result {
+        final float directCutoff;
+        final float airspaceCutoff;
+        final float sendGain0;
+        final float sendGain1;
+        final float sendGain2;
+        final float sendGain3;
+        final float sendCutoff0;
+        final float sendCutoff1;
+        final float sendCutoff2;
+        final float sendCutoff3;
+
+        // Block bounds of the traced volume, inclusive
+        private final int minX;
+        private final int minY;
+        private final int minZ;
+        private final int maxX;
+        private final int maxY;
+        private final int maxZ;
+        // When the trace was made, as given by System.nanoTime()
+        private final long created = System.nanoTime();
+
+        Result(final float directCutoff, final float airspaceCutoff,
+               final float sendGain0, final float sendGain1, final float sendGain2, final float sendGain3,
+               final float sendCutoff0, final float sendCutoff1, final float sendCutoff2, final float sendCutoff3,
+               final int minX, final int minY, final int minZ, final int maxX, final int maxY, final int maxZ) {
+            this.directCutoff = directCutoff;
+            this.airspaceCutoff = airspaceCutoff;
+            this.sendGain0 = sendGain0;
+            this.sendGain1 = sendGain1;
+            this.sendGain2 = sendGain2;
+            this.sendGain3 = sendGain3;
+            this.sendCutoff0 = sendCutoff0;
+            this.sendCutoff1 = sendCutoff1;
+            this.sendCutoff2 = sendCutoff2;
+            this.sendCutoff3 = sendCutoff3;
+            this.minX = minX;
+            this.minY = minY;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.maxZ = maxZ;
+        }
+
+        boolean contains(@Nonnull final BlockPos pos) {
+            return pos.getX() >= this.minX && pos.getX() <= this.maxX
+                    && pos.getY() >= this.minY && pos.getY() <= this.maxY
+                    && pos.getZ() >= this.minZ && pos.getZ() <= this.maxZ;
+        }
+    }
+}
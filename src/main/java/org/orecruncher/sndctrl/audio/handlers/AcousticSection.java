@@ -0,0 +1,241 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.util.BitStorage;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.ClipContext;
+import net.minecraft.world.level.EmptyBlockGetter;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.GlobalPalette;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.Palette;
+import net.minecraft.world.level.material.FluidState;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.shapes.CollisionContext;
+import net.minecraft.world.phys.shapes.Shapes;
+import net.minecraft.world.phys.shapes.VoxelShape;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.math.MathStuff;
+import org.orecruncher.sndctrl.library.AudioEffectLibrary;
+import org.orecruncher.sndctrl.misc.IMixinPalettedContainer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Immutable, palette compressed copy of a 16x16x16 chunk section.  The palette and packed index storage of the
+ * section are copied as is, so a capture is a couple of array copies rather than a walk of the blocks.  Occlusion and reflectivity for each palette
+ * entry are resolved at build time so that lookups from the sound processing threads are simple array reads.  The
+ * same goes for the bounds of the collider and visual shapes used when ray marching.
+ */
+@OnlyIn(Dist.CLIENT)
+final class AcousticSection {
+
+    /**
+     * Number of doubles used to describe a bounding box: minX, minY, minZ, maxX, maxY, maxZ
+     */
+    static final int BOUNDS_STRIDE = 6;
+    // Bounds for a cell that cannot be hit.  Min is greater than max so no ray can intersect.
+    private static final double[] NO_BOUNDS = {1, 1, 1, 0, 0, 0};
+
+    // Air never occludes or reflects so there is no need to consult the library
+    static final AcousticSection EMPTY = new AcousticSection(new BlockState[]{Blocks.AIR.defaultBlockState()}, new float[1], new float[1], NO_BOUNDS, NO_BOUNDS, null);
+
+    private static final int SECTION_VOLUME = 16 * 16 * 16;
+
+    private final BlockState[] palette;
+    private final float[] occlusion;
+    private final float[] reflectivity;
+    private final double[] colliderBounds;
+    private final double[] visualBounds;
+    // Palette index of each block.  Not populated if the section consists of a single state.
+    private final BitStorage indices;
+    // Whether any of the palette entries has a collider a ray could hit
+    private final boolean solid;
+
+    private AcousticSection(@Nonnull final BlockState[] palette, @Nonnull final float[] occlusion, @Nonnull final float[] reflectivity, @Nonnull final double[] colliderBounds, @Nonnull final double[] visualBounds, @Nullable final BitStorage indices) {
+        this.palette = palette;
+        this.occlusion = occlusion;
+        this.reflectivity = reflectivity;
+        this.colliderBounds = colliderBounds;
+        this.visualBounds = visualBounds;
+        this.indices = indices;
+
+        boolean solid = false;
+        for (int i = 0; i < palette.length && !solid; i++)
+            solid = colliderBounds[i * BOUNDS_STRIDE] <= colliderBounds[i * BOUNDS_STRIDE + 3];
+        this.solid = solid;
+    }
+
+    @Nonnull
+    private static AcousticSection create(@Nonnull final BlockState[] palette, @Nullable final BitStorage indices) {
+        final float[] occlusion = new float[palette.length];
+        final float[] reflectivity = new float[palette.length];
+        final double[] colliderBounds = new double[palette.length * BOUNDS_STRIDE];
+        final double[] visualBounds = new double[palette.length * BOUNDS_STRIDE];
+        for (int i = 0; i < palette.length; i++) {
+            occlusion[i] = AudioEffectLibrary.getOcclusion(palette[i]);
+            reflectivity[i] = AudioEffectLibrary.getReflectivity(palette[i]);
+            bakeBounds(palette[i], ClipContext.Block.COLLIDER, colliderBounds, i * BOUNDS_STRIDE);
+            bakeBounds(palette[i], ClipContext.Block.VISUAL, visualBounds, i * BOUNDS_STRIDE);
+        }
+        return new AcousticSection(palette, occlusion, reflectivity, colliderBounds, visualBounds, indices);
+    }
+
+    /**
+     * Determines the bounds of the shape a ray would hit when passing through a cell containing the state.  Source
+     * fluids are considered solid for this purpose.  The bounds are clamped to the cell so that marching the cells
+     * in order will yield hits in order.
+     */
+    private static void bakeBounds(@Nonnull final BlockState state, @Nonnull final ClipContext.Block mode, @Nonnull final double[] bounds, final int offset) {
+        VoxelShape shape;
+        try {
+            shape = state.isAir() ? Shapes.empty() : mode.get(state, EmptyBlockGetter.INSTANCE, BlockPos.ZERO, CollisionContext.empty());
+            final FluidState fluid = state.getFluidState();
+            if (!fluid.isEmpty() && fluid.isSource())
+                shape = Shapes.or(shape, fluid.getShape(EmptyBlockGetter.INSTANCE, BlockPos.ZERO));
+        } catch (@Nonnull final Throwable t) {
+            // Some blocks expect a real world when calculating their shape
+            shape = state.getMaterial().isSolidBlocking() ? Shapes.block() : Shapes.empty();
+        }
+
+        if (shape.isEmpty()) {
+            System.arraycopy(NO_BOUNDS, 0, bounds, offset, BOUNDS_STRIDE);
+        } else {
+            final AABB box = shape.bounds();
+            bounds[offset] = MathStuff.clamp1(box.minX);
+            bounds[offset + 1] = MathStuff.clamp1(box.minY);
+            bounds[offset + 2] = MathStuff.clamp1(box.minZ);
+            bounds[offset + 3] = MathStuff.clamp1(box.maxX);
+            bounds[offset + 4] = MathStuff.clamp1(box.maxY);
+            bounds[offset + 5] = MathStuff.clamp1(box.maxZ);
+        }
+    }
+
+    /**
+     * Captures the current content of the chunk section.  Must be called from the client thread.
+     *
+     * @param section Chunk section to capture
+     * @return Immutable copy of the section data
+     */
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    static AcousticSection of(@Nonnull final LevelChunkSection section) {
+        if (section.isEmpty())
+            return EMPTY;
+
+        // Without the accessor, as in the benchmarks, fall back to reading the blocks
+        if (!(section.getStates() instanceof IMixinPalettedContainer))
+            return compact(section);
+        final IMixinPalettedContainer<BlockState> container = (IMixinPalettedContainer<BlockState>) section.getStates();
+        final Palette<BlockState> palette = container.getPalette();
+        // Ids of the global palette are registry ids which would make for huge lookup tables
+        if (palette instanceof GlobalPalette)
+            return compact(section);
+
+        final BlockState[] states = new BlockState[palette.getSize()];
+        for (int i = 0; i < states.length; i++) {
+            final BlockState state = palette.valueFor(i);
+            states[i] = state == null ? Blocks.AIR.defaultBlockState() : state;
+        }
+
+        if (states.length == 1)
+            return create(states, null);
+
+        final BitStorage storage = container.getStorage();
+        return create(states, new BitStorage(storage.getBits(), storage.getSize(), storage.getRaw().clone()));
+    }
+
+    /**
+     * Builds a palette from the states found in the section.  Only used for sections that have outgrown their own
+     * palette, which is rare, or when the section storage cannot be reached.
+     */
+    @Nonnull
+    private static AcousticSection compact(@Nonnull final LevelChunkSection section) {
+        final Reference2IntOpenHashMap<BlockState> lookup = new Reference2IntOpenHashMap<>();
+        lookup.defaultReturnValue(-1);
+        final BlockState[] states = new BlockState[SECTION_VOLUME];
+        final int[] indices = new int[SECTION_VOLUME];
+
+        int idx = 0;
+        for (int y = 0; y < 16; y++)
+            for (int z = 0; z < 16; z++)
+                for (int x = 0; x < 16; x++) {
+                    final BlockState state = section.getBlockState(x, y, z);
+                    int paletteIdx = lookup.getInt(state);
+                    if (paletteIdx == -1) {
+                        paletteIdx = lookup.size();
+                        lookup.put(state, paletteIdx);
+                        states[paletteIdx] = state;
+                    }
+                    indices[idx++] = paletteIdx;
+                }
+
+        final int paletteSize = lookup.size();
+        final BlockState[] palette = new BlockState[paletteSize];
+        System.arraycopy(states, 0, palette, 0, paletteSize);
+
+        if (paletteSize == 1)
+            return create(palette, null);
+
+        final BitStorage storage = new BitStorage(Mth.ceillog2(paletteSize), SECTION_VOLUME);
+        for (int i = 0; i < SECTION_VOLUME; i++)
+            storage.set(i, indices[i]);
+        return create(palette, storage);
+    }
+
+    int paletteIndex(final int x, final int y, final int z) {
+        return this.indices == null ? 0 : this.indices.get((y << 8) | (z << 4) | x);
+    }
+
+    /**
+     * Determines if the section could contain something that blocks a ray.  Only an approximation since the palette
+     * can hold states that are no longer present.
+     */
+    boolean isSolid() {
+        return this.solid;
+    }
+
+    @Nonnull
+    BlockState getBlockState(final int x, final int y, final int z) {
+        return this.palette[paletteIndex(x, y, z)];
+    }
+
+    float getOcclusion(final int x, final int y, final int z) {
+        return this.occlusion[paletteIndex(x, y, z)];
+    }
+
+    float getReflectivity(final int x, final int y, final int z) {
+        return this.reflectivity[paletteIndex(x, y, z)];
+    }
+
+    /**
+     * Gets the flattened shape bounds for the palette, BOUNDS_STRIDE entries per palette index.  An entry where
+     * the min exceeds the max cannot be hit.
+     */
+    @Nonnull
+    double[] getBounds(@Nonnull final ClipContext.Block mode) {
+        return mode == ClipContext.Block.VISUAL ? this.visualBounds : this.colliderBounds;
+    }
+}
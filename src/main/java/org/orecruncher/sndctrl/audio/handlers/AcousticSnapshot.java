@@ -0,0 +1,181 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.material.FluidState;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Immutable view of the blocks surrounding the listener captured on the client thread.  Sound processing threads
+ * trace against this snapshot rather than the live world so they never contend with the client for world access.
+ * Positions outside the captured volume are reported as air.
+ */
+@OnlyIn(Dist.CLIENT)
+public final class AcousticSnapshot implements BlockGetter {
+
+    public static final AcousticSnapshot EMPTY = new AcousticSnapshot(0, 0, 0, 0, 0, new AcousticSection[0], 0, 256, 0);
+
+    // Section coordinates of the minimum corner of the captured volume
+    private final int originX;
+    private final int originY;
+    private final int originZ;
+    // Dimensions of the captured volume in sections
+    private final int sizeXZ;
+    private final int sizeY;
+    private final AcousticSection[] sections;
+    private final int minBuildHeight;
+    private final int height;
+    private final int revision;
+
+    AcousticSnapshot(final int originX, final int originY, final int originZ, final int sizeXZ, final int sizeY, @Nonnull final AcousticSection[] sections, final int minBuildHeight, final int height, final int revision) {
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+        this.sizeXZ = sizeXZ;
+        this.sizeY = sizeY;
+        this.sections = sections;
+        this.minBuildHeight = minBuildHeight;
+        this.height = height;
+        this.revision = revision;
+    }
+
+    /**
+     * Revision of the snapshot content.  Changes when the world or effect configuration changes, or when a chunk
+     * section was replaced without block updates being posted.  Ordinary block updates do not change the revision.
+     */
+    public int getRevision() {
+        return this.revision;
+    }
+
+    @Nonnull
+    AcousticSection section(final int x, final int y, final int z) {
+        final int sx = (x >> 4) - this.originX;
+        final int sy = (y >> 4) - this.originY;
+        final int sz = (z >> 4) - this.originZ;
+        if (sx < 0 || sx >= this.sizeXZ || sy < 0 || sy >= this.sizeY || sz < 0 || sz >= this.sizeXZ)
+            return AcousticSection.EMPTY;
+        return this.sections[(sy * this.sizeXZ + sz) * this.sizeXZ + sx];
+    }
+
+    /**
+     * Determines if anything in the snapshot could be overhead of the specified block position, looking at whole
+     * sections above the one containing the position.
+     */
+    boolean isCovered(final int x, final int y, final int z) {
+        final int sx = (x >> 4) - this.originX;
+        final int sz = (z >> 4) - this.originZ;
+        if (sx < 0 || sx >= this.sizeXZ || sz < 0 || sz >= this.sizeXZ)
+            return false;
+        for (int sy = Math.max((y >> 4) - this.originY + 1, 0); sy < this.sizeY; sy++)
+            if (this.sections[(sy * this.sizeXZ + sz) * this.sizeXZ + sx].isSolid())
+                return true;
+        return false;
+    }
+
+    // Block coordinate bounds of the captured volume.  Min is inclusive, max is exclusive.
+    int minX() {
+        return this.originX << 4;
+    }
+
+    int minY() {
+        return this.originY << 4;
+    }
+
+    int minZ() {
+        return this.originZ << 4;
+    }
+
+    int maxX() {
+        return (this.originX + this.sizeXZ) << 4;
+    }
+
+    int maxY() {
+        return (this.originY + this.sizeY) << 4;
+    }
+
+    int maxZ() {
+        return (this.originZ + this.sizeXZ) << 4;
+    }
+
+    @Nonnull
+    public BlockState getBlockState(final int x, final int y, final int z) {
+        return section(x, y, z).getBlockState(x & 15, y & 15, z & 15);
+    }
+
+    /**
+     * Gets the occlusion coefficient of the block at the specified location as configured in the
+     * AudioEffectLibrary at the time of capture.
+     */
+    public float getOcclusion(final int x, final int y, final int z) {
+        return section(x, y, z).getOcclusion(x & 15, y & 15, z & 15);
+    }
+
+    public float getOcclusion(@Nonnull final BlockPos pos) {
+        return getOcclusion(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    /**
+     * Gets the reflectivity coefficient of the block at the specified location as configured in the
+     * AudioEffectLibrary at the time of capture.
+     */
+    public float getReflectivity(final int x, final int y, final int z) {
+        return section(x, y, z).getReflectivity(x & 15, y & 15, z & 15);
+    }
+
+    public float getReflectivity(@Nonnull final BlockPos pos) {
+        return getReflectivity(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    @Override
+    @Nonnull
+    public BlockState getBlockState(@Nonnull final BlockPos pos) {
+        return getBlockState(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    @Override
+    @Nonnull
+    public FluidState getFluidState(@Nonnull final BlockPos pos) {
+        return getBlockState(pos).getFluidState();
+    }
+
+    @Override
+    @Nullable
+    public BlockEntity getBlockEntity(@Nonnull final BlockPos pos) {
+        // Tile entities are not captured
+        return null;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.height;
+    }
+
+    @Override
+    public int getMinBuildHeight() {
+        return this.minBuildHeight;
+    }
+}
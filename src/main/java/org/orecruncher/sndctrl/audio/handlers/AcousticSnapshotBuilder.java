@@ -0,0 +1,180 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.math.MathStuff;
+import org.orecruncher.lib.random.XorShiftRandom;
+import org.orecruncher.sndctrl.library.AudioEffectLibrary;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Random;
+
+/**
+ * Maintains the section cache used to produce an AcousticSnapshot each tick.  Sections are only recaptured when
+ * they first come into range, are flagged dirty by a block update, or age out.  Everything else is shared between
+ * consecutive snapshots so the per tick cost is mostly copying references.  Only to be used from the client thread.
+ */
+@OnlyIn(Dist.CLIENT)
+public final class AcousticSnapshotBuilder {
+
+    // Radius, in sections, of the captured volume around the listener
+    private static final int RADIUS_XZ = 4;
+    private static final int SIZE_XZ = RADIUS_XZ * 2 + 1;
+    // Vertically the whole build height is captured so rays always find ceilings and floors.  Worlds taller than
+    // this are captured in a band around the listener.
+    private static final int MAX_SIZE_Y = 24;
+    // Limit the number of sections captured in a single tick to avoid a spike after teleport/login
+    private static final int MAX_CAPTURES_PER_TICK = 48;
+    // Sections are recaptured periodically in case a chunk was refreshed without block updates
+    private static final int REFRESH_TICKS = 200;
+    // Spread the refreshes out so sections captured together do not all come due on the same tick
+    private static final int REFRESH_JITTER = 100;
+
+    private final Long2ObjectOpenHashMap<Entry> cache = new Long2ObjectOpenHashMap<>(SIZE_XZ * SIZE_XZ * MAX_SIZE_Y * 2);
+    private final Random random = new XorShiftRandom();
+    private Level world;
+    private long originSection = Long.MIN_VALUE;
+    private int libraryGeneration = -1;
+    private int tickCount;
+    private int revision;
+
+    /**
+     * Captures a snapshot of the blocks around the specified position.
+     *
+     * @param world  The world to capture
+     * @param center The center of the volume, usually the listener's eye position
+     * @return Immutable snapshot of the surrounding blocks
+     */
+    @Nonnull
+    public AcousticSnapshot capture(@Nonnull final Level world, @Nonnull final BlockPos center) {
+        this.tickCount++;
+
+        // Changes in world or effect configuration invalidate everything
+        if (this.world != world || this.libraryGeneration != AudioEffectLibrary.getGeneration()) {
+            this.cache.clear();
+            this.world = world;
+            this.libraryGeneration = AudioEffectLibrary.getGeneration();
+            this.originSection = Long.MIN_VALUE;
+            this.revision++;
+        }
+
+        final int originX = SectionPos.blockToSectionCoord(center.getX()) - RADIUS_XZ;
+        final int sizeY = Math.min(world.getSectionsCount(), MAX_SIZE_Y);
+        final int originY = MathStuff.clamp(SectionPos.blockToSectionCoord(center.getY()) - sizeY / 2, world.getMinSection(), world.getMaxSection() - sizeY);
+        final int originZ = SectionPos.blockToSectionCoord(center.getZ()) - RADIUS_XZ;
+
+        final long newOrigin = SectionPos.asLong(originX, originY, originZ);
+        if (newOrigin != this.originSection) {
+            this.originSection = newOrigin;
+            evict(originX, originY, originZ, sizeY);
+        }
+
+        int budget = MAX_CAPTURES_PER_TICK;
+        final AcousticSection[] sections = new AcousticSection[SIZE_XZ * SIZE_XZ * sizeY];
+        int idx = 0;
+        for (int y = 0; y < sizeY; y++)
+            for (int z = 0; z < SIZE_XZ; z++)
+                for (int x = 0; x < SIZE_XZ; x++) {
+                    final int sx = originX + x;
+                    final int sy = originY + y;
+                    final int sz = originZ + z;
+                    final long key = SectionPos.asLong(sx, sy, sz);
+
+                    Entry entry = this.cache.get(key);
+                    final LevelChunkSection source = getSection(world, sx, sy, sz);
+                    final boolean needsCapture = entry == null || entry.source != source || this.tickCount >= entry.refreshTick;
+                    if (needsCapture && budget > 0) {
+                        budget--;
+                        // A section swapped out from under us, like a chunk resend, is not reported as block updates
+                        if (entry != null && entry.source != source)
+                            this.revision++;
+                        entry = new Entry(source, source == null ? AcousticSection.EMPTY : AcousticSection.of(source), this.tickCount + REFRESH_TICKS + this.random.nextInt(REFRESH_JITTER));
+                        this.cache.put(key, entry);
+                    }
+
+                    sections[idx++] = entry == null ? AcousticSection.EMPTY : entry.data;
+                }
+
+        return new AcousticSnapshot(originX, originY, originZ, SIZE_XZ, sizeY, sections, world.getMinBuildHeight(), world.getHeight(), this.revision);
+    }
+
+    /**
+     * Flags the sections containing the specified block positions for recapture.
+     *
+     * @param positions Block positions that have changed
+     */
+    public void invalidate(@Nonnull final Collection<BlockPos> positions) {
+        for (final BlockPos pos : positions)
+            this.cache.remove(SectionPos.asLong(SectionPos.blockToSectionCoord(pos.getX()), SectionPos.blockToSectionCoord(pos.getY()), SectionPos.blockToSectionCoord(pos.getZ())));
+    }
+
+    /**
+     * Releases all cached section data.
+     */
+    public void clear() {
+        this.cache.clear();
+        this.world = null;
+        this.originSection = Long.MIN_VALUE;
+    }
+
+    private void evict(final int originX, final int originY, final int originZ, final int sizeY) {
+        for (final LongIterator itr = this.cache.keySet().iterator(); itr.hasNext(); ) {
+            final long key = itr.nextLong();
+            final int x = SectionPos.x(key) - originX;
+            final int y = SectionPos.y(key) - originY;
+            final int z = SectionPos.z(key) - originZ;
+            if (x < 0 || x >= SIZE_XZ || y < 0 || y >= sizeY || z < 0 || z >= SIZE_XZ)
+                itr.remove();
+        }
+    }
+
+    @Nullable
+    private static LevelChunkSection getSection(@Nonnull final Level world, final int sx, final int sy, final int sz) {
+        if (sy < world.getMinSection() || sy >= world.getMaxSection())
+            return null;
+        final LevelChunk chunk = world.getChunkSource().getChunkNow(sx, sz);
+        if (chunk == null)
+            return null;
+        final LevelChunkSection section = chunk.getSections()[world.getSectionIndexFromSectionY(sy)];
+        return LevelChunkSection.isEmpty(section) ? null : section;
+    }
+
+    private static final class Entry {
+        final LevelChunkSection source;
+        final AcousticSection data;
+        final int refreshTick;
+
+        Entry(@Nullable final LevelChunkSection source, @Nonnull final AcousticSection data, final int refreshTick) {
+            this.source = source;
+            this.data = data;
+            this.refreshTick = refreshTick;
+        }
+    }
+}
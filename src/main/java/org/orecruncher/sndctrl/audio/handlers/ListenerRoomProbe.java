@@ -0,0 +1,158 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import net.minecraft.world.level.ClipContext;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.GameUtils;
+import org.orecruncher.lib.math.MathStuff;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Acoustic description of the space around the listener.  It is computed once per iteration of the sound processor
+ * and shared by all sounds.  Sounds that are in the same space as the listener, or too far away for their own
+ * surroundings to matter, use the reverb of the room rather than tracing their own.  The room is also measured for
+ * the diagnostic display, but only while the debug screen is showing since nothing else uses the measurements.
+ */
+@OnlyIn(Dist.CLIENT)
+final class ListenerRoomProbe {
+
+    // Length of the rays used to measure the room
+    private static final double PROBE_DISTANCE = 64;
+    // Scratch space for tracing.  Probes are only built by the sound processor thread.
+    private static final float[] BOUNCE_RATIO = new float[TraceDetail.FULL.getBounces()];
+
+    /**
+     * Listener cell and snapshot revision the probe was made for
+     */
+    final long listenerCell;
+    final int revision;
+    /**
+     * Reverb of the room as if a sound was played at the listener's position
+     */
+    final AcousticResultCache.Result room;
+    /**
+     * Whether the measurements below were taken
+     */
+    final boolean measured;
+    /**
+     * Fraction of the probe rays that hit something.  0 is wide open, 1 is fully enclosed.
+     */
+    final float enclosure;
+    /**
+     * Average reflectivity of the surfaces hit by the probe
+     */
+    final float reflectivity;
+    /**
+     * Estimated reverb decay time in seconds
+     */
+    final float decay;
+
+    private ListenerRoomProbe(final long listenerCell, final int revision, @Nonnull final AcousticResultCache.Result room) {
+        this(listenerCell, revision, room, false, 0F, 0F, 0F);
+    }
+
+    private ListenerRoomProbe(final long listenerCell, final int revision, @Nonnull final AcousticResultCache.Result room, final boolean measured, final float enclosure, final float reflectivity, final float decay) {
+        this.listenerCell = listenerCell;
+        this.revision = revision;
+        this.room = room;
+        this.measured = measured;
+        this.enclosure = enclosure;
+        this.reflectivity = reflectivity;
+        this.decay = decay;
+    }
+
+    /**
+     * Indicates whether the probe describes the listener's current surroundings.
+     */
+    boolean isValidFor(@Nonnull final WorldContext ctx) {
+        return this.listenerCell == ctx.playerEyePos.asLong() && this.revision == ctx.snapshot.getRevision();
+    }
+
+    /**
+     * Probes the space around the listener.  If the room has not changed since the prior probe it is returned as is.
+     *
+     * @param ctx   The current world context
+     * @param cache Cache to consult for the room trace
+     * @param prior The probe from the prior iteration, if any
+     * @return Probe describing the listener's surroundings
+     */
+    @Nonnull
+    static ListenerRoomProbe probe(@Nonnull final WorldContext ctx, @Nonnull final AcousticResultCache cache, @Nullable final ListenerRoomProbe prior) {
+        final long listenerCell = ctx.playerEyePos.asLong();
+        final AcousticSnapshot world = ctx.snapshot;
+        final boolean measure = GameUtils.displayDebug();
+
+        AcousticResultCache.Result room = cache.get(listenerCell, listenerCell, world.getRevision(), false, TraceDetail.FULL);
+        if (room != null && prior != null && prior.room == room && (prior.measured || !measure))
+            return prior;
+
+        if (room == null) {
+            room = SoundFXUtils.trace(ctx, ctx.playerEyePosition, TraceDetail.FULL, 0F, BOUNCE_RATIO);
+            cache.put(listenerCell, listenerCell, world.getRevision(), false, TraceDetail.FULL, room);
+        }
+
+        if (!measure)
+            return new ListenerRoomProbe(listenerCell, world.getRevision(), room);
+
+        // Measure the room with the primary rays
+        final double x = ctx.playerEyePosition.x;
+        final double y = ctx.playerEyePosition.y;
+        final double z = ctx.playerEyePosition.z;
+        final AcousticRayMarcher marcher = AcousticRayMarcher.get();
+        final AcousticRayMarcher.Hit hit = marcher.hit();
+        final int rays = TraceDetail.FULL.getRays();
+
+        int hits = 0;
+        float reflectivity = 0F;
+        double pathLength = 0D;
+        for (int i = 0; i < rays; i++) {
+            final double dirX = SoundFXUtils.REVERB_RAY_NORMALS[i * 3];
+            final double dirY = SoundFXUtils.REVERB_RAY_NORMALS[i * 3 + 1];
+            final double dirZ = SoundFXUtils.REVERB_RAY_NORMALS[i * 3 + 2];
+            if (marcher.trace(world, ClipContext.Block.COLLIDER, x, y, z, x + dirX * PROBE_DISTANCE, y + dirY * PROBE_DISTANCE, z + dirZ * PROBE_DISTANCE)) {
+                hits++;
+                reflectivity += world.getReflectivity(hit.blockX, hit.blockY, hit.blockZ);
+                pathLength += hit.distance(x, y, z);
+            }
+        }
+
+        final float enclosure = (float) hits / rays;
+        float decay = 0F;
+        if (hits > 0) {
+            reflectivity /= hits;
+            // Eyring estimate using the mean free path of the room, 4V/S, scaled back for openings
+            final double meanFreePath = pathLength / hits;
+            final double absorption = -Math.log(MathStuff.clamp(reflectivity, 0.01F, 0.99F));
+            decay = (float) (0.161D * meanFreePath * 0.25D / absorption) * enclosure;
+        }
+
+        return new ListenerRoomProbe(listenerCell, world.getRevision(), room, true, enclosure, reflectivity, decay);
+    }
+
+    @Nonnull
+    String getDiagnosticString() {
+        if (!this.measured)
+            return "Listener Room: not measured";
+        return String.format("Listener Room: enclosure %.2f, reflectivity %.2f, decay %.2fs", this.enclosure, this.reflectivity, this.decay);
+    }
+}
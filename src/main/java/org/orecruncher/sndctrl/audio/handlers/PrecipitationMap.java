@@ -0,0 +1,160 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.orecruncher.lib.TickCounter;
+import org.orecruncher.lib.WorldUtils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Precipitation falling on the columns around the listener.  Captured on the client thread so that the sound
+ * processing threads can work out weather effects without going to the world.  Columns are sampled in cells a few
+ * blocks across since biomes and the precipitation height do not vary much from one block to the next.  Lookups
+ * blend the four nearest cells so the result changes smoothly across cell boundaries.  Positions outside the map
+ * use the cells on its edge.  The map is kept while the listener stays in the same cell, and is refreshed every so
+ * often to pick up changes in the precipitation height.
+ */
+@OnlyIn(Dist.CLIENT)
+final class PrecipitationMap {
+
+    // Width of a cell in blocks, and how many cells out from the listener the map reaches
+    static final int CELL_SIZE = 2;
+    static final int RADIUS = 12;
+    static final int SIZE = RADIUS * 2 + 1;
+    // Ticks a capture is kept while the listener stays in the same cell
+    private static final int REFRESH_TICKS = 20;
+
+    private static final byte NONE = (byte) Biome.Precipitation.NONE.ordinal();
+    // Air absorption factor for each precipitation type, indexed by ordinal
+    private static final float[] ABSORPTION = new float[Biome.Precipitation.values().length];
+
+    static {
+        ABSORPTION[Biome.Precipitation.NONE.ordinal()] = 1F;
+        ABSORPTION[Biome.Precipitation.RAIN.ordinal()] = Effects.RAIN_AIR_ABSORPTION_FACTOR;
+        ABSORPTION[Biome.Precipitation.SNOW.ordinal()] = Effects.SNOW_AIR_ABSORPTION_FACTOR;
+    }
+
+    // Precipitation type of each cell as the ordinal of Biome.Precipitation, and the height at which it stops falling
+    private final byte[] types = new byte[SIZE * SIZE];
+    private final int[] heights = new int[SIZE * SIZE];
+    private final BlockPos.MutableBlockPos scratch = new BlockPos.MutableBlockPos();
+    // Block coordinates of the minimum corner of the map
+    private int originX;
+    private int originZ;
+    private boolean isEmpty = true;
+    // World and tick of the last capture
+    @Nullable
+    private Level world;
+    private long captureTick;
+
+    /**
+     * Captures the precipitation around the specified position.  Must be called from the client thread.
+     *
+     * @param world  The world to capture
+     * @param center The center of the map, usually the listener's position
+     */
+    void capture(@Nonnull final Level world, @Nonnull final BlockPos center) {
+        if (!WorldUtils.isRaining(world)) {
+            clear();
+            return;
+        }
+
+        final int originX = Math.floorDiv(center.getX(), CELL_SIZE) * CELL_SIZE - RADIUS * CELL_SIZE;
+        final int originZ = Math.floorDiv(center.getZ(), CELL_SIZE) * CELL_SIZE - RADIUS * CELL_SIZE;
+        final long tick = TickCounter.getTickCount();
+        if (!this.isEmpty && this.world == world && this.originX == originX && this.originZ == originZ
+                && tick - this.captureTick < REFRESH_TICKS)
+            return;
+
+        this.originX = originX;
+        this.originZ = originZ;
+        this.world = world;
+        this.captureTick = tick;
+        this.isEmpty = false;
+
+        // Sample the middle of each cell
+        final int offset = CELL_SIZE / 2;
+        int idx = 0;
+        for (int z = 0; z < SIZE; z++)
+            for (int x = 0; x < SIZE; x++) {
+                this.scratch.set(this.originX + x * CELL_SIZE + offset, center.getY(), this.originZ + z * CELL_SIZE + offset);
+                final Biome biome = world.getBiome(this.scratch);
+                if (biome.getPrecipitation() == Biome.Precipitation.NONE) {
+                    this.types[idx] = NONE;
+                    this.heights[idx] = Integer.MAX_VALUE;
+                } else {
+                    final int height = WorldUtils.getPrecipitationHeight(world, this.scratch).getY();
+                    this.scratch.setY(height);
+                    final float temp = WorldUtils.getTemperatureAt(world, this.scratch);
+                    this.types[idx] = (byte) (WorldUtils.isSnowTemperature(temp) ? Biome.Precipitation.SNOW : Biome.Precipitation.RAIN).ordinal();
+                    this.heights[idx] = height;
+                }
+                idx++;
+            }
+    }
+
+    /**
+     * Clears the map so that no precipitation is reported anywhere.
+     */
+    void clear() {
+        if (!this.isEmpty) {
+            Arrays.fill(this.types, NONE);
+            this.isEmpty = true;
+        }
+        this.world = null;
+    }
+
+    /**
+     * Gets the air absorption factor caused by precipitation at the specified position, before scaling by the
+     * strength of the precipitation.  Positions below the precipitation height of a cell are sheltered from it.
+     */
+    float getAbsorption(final double x, final double y, final double z) {
+        if (this.isEmpty)
+            return 1F;
+
+        // Position relative to the cell centers, which are where the cells were sampled
+        final double fx = (x - this.originX - (CELL_SIZE / 2 + 0.5D)) / CELL_SIZE;
+        final double fz = (z - this.originZ - (CELL_SIZE / 2 + 0.5D)) / CELL_SIZE;
+        final int x0 = Math.min(Math.max((int) Math.floor(fx), 0), SIZE - 2);
+        final int z0 = Math.min(Math.max((int) Math.floor(fz), 0), SIZE - 2);
+        final float tx = (float) Math.min(Math.max(fx - x0, 0D), 1D);
+        final float tz = (float) Math.min(Math.max(fz - z0, 0D), 1D);
+
+        final int idx = z0 * SIZE + x0;
+        final float a00 = absorption(idx, y);
+        final float a10 = absorption(idx + 1, y);
+        final float a01 = absorption(idx + SIZE, y);
+        final float a11 = absorption(idx + SIZE + 1, y);
+        final float a0 = a00 + (a10 - a00) * tx;
+        final float a1 = a01 + (a11 - a01) * tx;
+        return a0 + (a1 - a0) * tz;
+    }
+
+    private float absorption(final int idx, final double y) {
+        return y < this.heights[idx] ? 1F : ABSORPTION[this.types[idx]];
+    }
+}
@@ -20,6 +20,7 @@ package org.orecruncher.sndctrl.audio.handlers;
 
 import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 import com.mojang.blaze3d.audio.SoundBuffer;
+import net.minecraft.client.sounds.AudioStream;
 import net.minecraft.client.sounds.ChannelAccess;
 import net.minecraft.client.resources.sounds.SoundInstance;
 import com.mojang.blaze3d.audio.Channel;
@@ -35,15 +36,17 @@ import org.apache.commons.lang3.StringUtils;
 import org.lwjgl.openal.AL10;
 import org.orecruncher.lib.Singleton;
 import org.orecruncher.lib.Utilities;
-import org.orecruncher.lib.collections.ObjectArray;
+import org.orecruncher.lib.events.BlockUpdateEvent;
 import org.orecruncher.lib.events.DiagnosticEvent;
 import org.orecruncher.lib.logging.IModLog;
+import org.orecruncher.lib.math.MathStuff;
 import org.orecruncher.lib.threading.Worker;
 import org.orecruncher.sndctrl.api.sound.Category;
 import org.orecruncher.sndctrl.api.sound.ISoundCategory;
 import org.orecruncher.sndctrl.config.Config;
 import org.orecruncher.sndctrl.SoundControl;
 import org.orecruncher.sndctrl.audio.Conversion;
+import org.orecruncher.sndctrl.audio.SoundBufferCache;
 import org.orecruncher.sndctrl.audio.SoundUtils;
 import org.orecruncher.sndctrl.misc.IMixinSoundContext;
 
@@ -52,7 +55,9 @@ import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.Supplier;
 
 @Mod.EventBusSubscriber(modid = SoundControl.MOD_ID, value = Dist.CLIENT, bus = Mod.EventBusSubscriber.Bus.FORGE)
@@ -71,17 +76,42 @@ public final class SoundFXProcessor {
     private static SourceContext[] sources;
     private static Worker soundProcessor;
 
+    // Upper limit on the number of threads allocated by default
+    private static final int MAX_DEFAULT_THREADS = 8;
+
     // Use our own thread pool avoiding the common pool.  Thread allocation is better controlled, and we won't run
     // into/cause any problems with other tasks in the common pool.
-    private static final Singleton<ExecutorService> threadPool = new Singleton<>(() ->{
+    private static final Singleton<ForkJoinPool> threadPool = new Singleton<>(() -> {
         int threads = Config.CLIENT.sound.backgroundThreadWorkers.get();
-        if (threads == 0)
-            threads = 2;
+        if (threads == 0) {
+            // Leave room for the client and sound engine threads
+            threads = MathStuff.clamp(Runtime.getRuntime().availableProcessors() - 2, 2, MAX_DEFAULT_THREADS);
+        }
         LOGGER.info("Threads allocated to SoundControl sound processor: %d", threads);
-        return Executors.newFixedThreadPool(threads);
+        final ForkJoinPool.ForkJoinWorkerThreadFactory factory = pool -> {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("SoundControl Sound Worker " + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ForkJoinPool(threads, factory, (t, e) -> LOGGER.error(e, "Uncaught exception in %s", t.getName()), false);
     });
 
-    private static WorldContext worldContext = new WorldContext();
+    // Maintains the block snapshot handed to the sound processing threads
+    private static final AcousticSnapshotBuilder snapshotBuilder = new AcousticSnapshotBuilder();
+    // Two slot pool of contexts.  The client thread fills the spare while the sound threads work from the current
+    // one, then swaps them.
+    private static volatile WorldContext worldContext = new WorldContext();
+    private static WorldContext spareContext = new WorldContext();
+    // Results of prior traces that can be reused by sounds that have not moved
+    private static final AcousticResultCache resultCache = new AcousticResultCache();
+    // Decides which sources are updated on each iteration of the sound processor
+    private static final SourceScheduler scheduler = new SourceScheduler();
+    // Acoustics of the listener's surroundings, refreshed each iteration of the sound processor
+    private static volatile ListenerRoomProbe roomProbe;
+    // Sources selected for update on the current iteration.  Only touched by the sound processor thread.
+    private static SourceContext[] work = new SourceContext[256];
+    private static int workCount;
 
     static {
         MinecraftForge.EVENT_BUS.register(SoundFXProcessor.class);
@@ -90,9 +120,32 @@ public final class SoundFXProcessor {
     private SoundFXProcessor() {
     }
 
+    /**
+     * Gets the current world context and retains it so that it will not be recycled while in use.  The context
+     * must be released when done.
+     *
+     * @return The current world context
+     */
+    @Nonnull
+    static WorldContext acquireWorldContext() {
+        while (true) {
+            final WorldContext ctx = worldContext;
+            ctx.retain();
+            // If the context was swapped out before it was retained it could be getting refilled
+            if (ctx == worldContext)
+                return ctx;
+            ctx.release();
+        }
+    }
+
     @Nonnull
-    public static WorldContext getWorldContext() {
-        return worldContext;
+    static AcousticResultCache getResultCache() {
+        return resultCache;
+    }
+
+    @Nullable
+    static ListenerRoomProbe getRoomProbe() {
+        return roomProbe;
     }
 
     /**
@@ -140,6 +193,10 @@ public final class SoundFXProcessor {
                 Arrays.fill(sources, null);
                 sources = null;
             }
+            snapshotBuilder.clear();
+            resultCache.clear();
+            scheduler.reset();
+            roomProbe = null;
             Effects.deinitialize();
         }
     }
@@ -167,7 +224,12 @@ public final class SoundFXProcessor {
                 final SourceContext ctx = new SourceContext();
                 ctx.attachSound(sound);
                 ctx.enable();
-                ctx.exec();
+                final WorldContext worldCtx = acquireWorldContext();
+                try {
+                    ctx.exec(worldCtx);
+                } finally {
+                    worldCtx.release();
+                }
                 ((IMixinSoundContext) source).setData(ctx);
                 sources[source.source - 1] = ctx;
             }
@@ -217,12 +279,42 @@ public final class SoundFXProcessor {
         // processing is turned off.  If there is a context, make sure that the sound is attenuated.
         boolean doConversion = ctx == null || (ctx.getSound() != null && ctx.getSound().getAttenuation() != SoundInstance.Attenuation.NONE);
 
-        if (doConversion)
+        if (doConversion) {
+            // Sounds that have a context share a mono copy through the cache, leaving the original as is
+            if (ctx != null && Config.CLIENT.sound.monoCacheSize.get() > 0) {
+                final SoundBuffer mono = SoundBufferCache.get(ctx.getSound().getSound().getPath(), buffer);
+                if (mono != null)
+                    return mono;
+            }
             return Conversion.convert(buffer);
+        }
 
         return buffer;
     }
 
+    /**
+     * Injected into SoundSource and will be invoked when a streaming sound is attached to the SoundSource.  Same as
+     * playBuffer() except the stream is wrapped so that it is converted as the data is read.
+     *
+     * @param source SoundSource for which the audio stream is being attached
+     * @param stream The stream in question.
+     */
+    @Nonnull
+    public static AudioStream playStream(@Nonnull final Channel source, @Nonnull final AudioStream stream) {
+
+        // If disabled return
+        if (!Config.CLIENT.sound.enableMonoConversion.get())
+            return stream;
+
+        final SourceContext ctx = ((IMixinSoundContext) source).getData();
+        boolean doConversion = ctx == null || (ctx.getSound() != null && ctx.getSound().getAttenuation() != SoundInstance.Attenuation.NONE);
+
+        if (doConversion)
+            return Conversion.convert(stream);
+
+        return stream;
+    }
+
     /**
      * Invoked on a client tick. Establishes the current world context for further computation..
      *
@@ -231,7 +323,28 @@ public final class SoundFXProcessor {
     @SubscribeEvent(priority = EventPriority.HIGH)
     public static void onClientTick(@Nonnull final TickEvent.ClientTickEvent event) {
         if (isAvailable() && event.side == LogicalSide.CLIENT && event.phase == TickEvent.Phase.START) {
-            worldContext = new WorldContext();
+            // A context from a couple of ticks ago can still be in use if the sound threads are behind.  Leave it
+            // be and start a new one; it will be collected when released.
+            WorldContext next = spareContext;
+            if (next.isInUse())
+                next = new WorldContext();
+            next.update(snapshotBuilder);
+            spareContext = worldContext;
+            worldContext = next;
+        }
+    }
+
+    /**
+     * Invoked when blocks change in the client world.  The affected sections of the acoustic snapshot will be
+     * recaptured on the next tick, and cached results that traced through the changes are dropped.
+     *
+     * @param event Event trigger in question.
+     */
+    @SubscribeEvent
+    public static void onBlockUpdate(@Nonnull final BlockUpdateEvent event) {
+        if (isAvailable()) {
+            snapshotBuilder.invalidate(event.getPositions());
+            resultCache.invalidate(event.getPositions());
         }
     }
 
@@ -240,35 +353,46 @@ public final class SoundFXProcessor {
      * so offloading to a separate thread to keep it out of either the client tick or sound engine makes sense.
      */
     private static void processSounds() {
+        final WorldContext worldCtx = acquireWorldContext();
         try {
-            final ExecutorService pool = threadPool.get();
+            final ForkJoinPool pool = threadPool.get();
             assert pool != null;
-            final ObjectArray<Future<?>> tasks = new ObjectArray<>(256);
-            for (int i = 0; i < SoundUtils.getMaxSounds(); i++) {
-                final SourceContext ctx = sources[i];
-                if (ctx != null && ctx.shouldExecute()) {
-                    tasks.add(pool.submit(ctx));
-                }
-            }
+            if (!worldCtx.isNotValid())
+                roomProbe = ListenerRoomProbe.probe(worldCtx, resultCache, roomProbe);
+
+            workCount = 0;
+            scheduler.schedule(sources, worldCtx, SoundFXProcessor::addWork);
 
-            if (tasks.size() > 0)
-                tasks.forEach(t -> {
-                    try {
-                        t.get();
-                    } catch (InterruptedException | ExecutionException ignored) {
-                    }
-                });
+            // Process the batch as a whole.  Idle threads will steal from busy ones so a handful of expensive
+            // sources will not hold up the rest.
+            if (workCount > 0)
+                pool.invoke(new SourceBatch(worldCtx, work, 0, workCount));
         } catch (@Nonnull final Throwable t) {
             LOGGER.error(t, "Error in SoundContext ForkJoinPool");
+        } finally {
+            worldCtx.release();
+            Arrays.fill(work, 0, workCount, null);
+            workCount = 0;
         }
     }
 
+    private static void addWork(@Nonnull final SourceContext ctx) {
+        if (workCount == work.length)
+            work = Arrays.copyOf(work, workCount * 2);
+        work[workCount++] = ctx;
+    }
+
     @SubscribeEvent(priority = EventPriority.HIGH)
     public static void onGatherText(@Nonnull final DiagnosticEvent event) {
         if (isAvailable() && soundProcessor != null) {
             final String msg = soundProcessor.getDiagnosticString();
             if (!StringUtils.isEmpty(msg))
                 event.getLeft().add(ChatFormatting.GREEN + msg);
+            event.getLeft().add(ChatFormatting.GREEN + scheduler.getDiagnosticString());
+            event.getLeft().add(ChatFormatting.GREEN + resultCache.getDiagnosticString());
+            final ListenerRoomProbe probe = roomProbe;
+            if (probe != null)
+                event.getLeft().add(ChatFormatting.GREEN + probe.getDiagnosticString());
         }
     }
 
@@ -296,4 +420,36 @@ public final class SoundFXProcessor {
             throw new IllegalStateException(String.format("OpenAL Error: %s [%s]", errorName, msg));
         }
     }
+
+    /**
+     * Updates a range of sources, splitting the work in half until the range is small enough to process directly.
+     */
+    private static final class SourceBatch extends RecursiveAction {
+
+        // Sources are not uniform in cost so keep the leaves small enough for stealing to balance the load
+        private static final int LEAF_SIZE = 4;
+
+        private final WorldContext ctx;
+        private final SourceContext[] sources;
+        private final int start;
+        private final int end;
+
+        SourceBatch(@Nonnull final WorldContext ctx, @Nonnull final SourceContext[] sources, final int start, final int end) {
+            this.ctx = ctx;
+            this.sources = sources;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.start <= LEAF_SIZE) {
+                for (int i = this.start; i < this.end; i++)
+                    this.sources[i].exec(this.ctx);
+            } else {
+                final int mid = (this.start + this.end) >>> 1;
+                invokeAll(new SourceBatch(this.ctx, this.sources, this.start, mid), new SourceBatch(this.ctx, this.sources, mid, this.end));
+            }
+        }
+    }
 }
@@ -25,38 +25,34 @@
  * - Added effect of rain on sound dampening
  * - Listener head in various fluids support
  * - Precache frequently used world information
+ * - Trace against a per tick snapshot of the world rather than the live world
+ * - Allocation free voxel ray marching
+ * - Reuse trace results for sounds and listeners that have not moved
+ * - Level of detail for the reverb probe based on distance and category
+ * - Share a probe of the listener's surroundings between sounds in the same space
  */
 
 package org.orecruncher.sndctrl.audio.handlers;
 
-import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.core.Direction;
 import net.minecraft.util.math.*;
 import net.minecraft.world.phys.Vec3;
-import net.minecraft.core.Vec3i;
-import net.minecraft.world.level.LevelReader;
-import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.BlockGetter;
+import net.minecraft.util.Mth;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import org.orecruncher.lib.WorldUtils;
-import org.orecruncher.lib.math.BlockRayTrace;
 import org.orecruncher.lib.math.MathStuff;
-import org.orecruncher.lib.math.RayTraceIterator;
 import org.orecruncher.mobeffects.library.Constants;
 import org.orecruncher.sndctrl.audio.SoundUtils;
 import org.orecruncher.sndctrl.config.Config;
-import org.orecruncher.sndctrl.audio.handlers.effects.LowPassData;
-import org.orecruncher.sndctrl.audio.handlers.effects.SourcePropertyFloat;
-import org.orecruncher.sndctrl.library.AudioEffectLibrary;
+import org.orecruncher.sndctrl.audio.handlers.effects.EffectParameterBuffer;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.Iterator;
+import java.util.Arrays;
 
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.level.ClipContext;
-import net.minecraft.world.phys.BlockHitResult;
-import net.minecraft.world.phys.HitResult;
 
 @OnlyIn(Dist.CLIENT)
 public final class SoundFXUtils {
@@ -66,81 +62,88 @@ public final class SoundFXUtils {
      */
     private static final int OCCLUSION_SEGMENTS = 5;
     /**
-     * Number of rays to project when doing reverb calculations.
+     * Maximum number of segments to sample along the path of a sound when calculating weather absorption.
      */
-    private static final int REVERB_RAYS = 32;
+    private static final int MAX_WEATHER_SEGMENTS = 16;
     /**
-     * Number of bounces a sound wave will make when projecting.
+     * Maximum number of rays to project when doing reverb calculations.  The TraceDetail of a sound determines how
+     * many are actually used.
      */
-    private static final int REVERB_RAY_BOUNCES = 4;
+    private static final int REVERB_RAYS = TraceDetail.FULL.getRays();
     /**
-     * Maximum distance to trace a reverb ray segment before stopping.
-     */
-    private static final float MAX_REVERB_DISTANCE = 256;
-    /**
-     * Reciprocal of the total number of rays cast.
-     */
-    private static final float RECIP_TOTAL_RAYS = 1F / (REVERB_RAYS * REVERB_RAY_BOUNCES);
-    /**
-     * Reciprocal of the total primary rays.
+     * Maximum number of bounces a sound wave will make when projecting.
      */
-    private static final float RECIP_PRIMARY_RAYS = 1F / REVERB_RAYS;
+    private static final int REVERB_RAY_BOUNCES = TraceDetail.FULL.getBounces();
     /**
-     * Sound reflection energy coefficient
-     */
-    private static final float ENERGY_COEFF = 0.75F * 0.25F * RECIP_TOTAL_RAYS;
-    /**
-     * Sound reflection energy constant
+     * Maximum distance to trace a reverb ray segment before stopping.
      */
-    private static final float ENERGY_CONST = 0.25F * 0.25F * RECIP_TOTAL_RAYS;
+    private static final float MAX_REVERB_DISTANCE = 256;
     /**
-     * Normals for the direction of each of the rays to be cast.
+     * Block absorption coefficient applied to occlusion.
      */
-    private static final Vec3[] REVERB_RAY_NORMALS = new Vec3[REVERB_RAYS];
+    private static final float ABSORPTION_COEFF = Effects.GLOBAL_BLOCK_ABSORPTION * 3.0F;
     /**
-     * Precalculated vectors to determine end targets relative to an origin.
+     * Sounds within this distance of the listener that can be seen are considered to be in the listener's room.
      */
-    private static final Vec3[] REVERB_RAY_PROJECTED = new Vec3[REVERB_RAYS];
+    private static final double ROOM_DISTANCE_SQ = 8D * 8D;
     /**
-     * Precaluclated direction surface normals as Vec3d instead of Vec3i
+     * Normals for the direction of each of the rays to be cast.  Stored flat as x, y, z triplets.
      */
-    private static final Vec3[] SURFACE_DIRECTION_NORMALS = new Vec3[Direction.values().length];
+    static final double[] REVERB_RAY_NORMALS = new double[REVERB_RAYS * 3];
 
     static {
 
-        // Would have been cool to have a direction vec as a 3d as well as 3i.
-        for (final Direction d : Direction.values()) {
-            Vec3i v = d.getNormal();
-            SURFACE_DIRECTION_NORMALS[d.ordinal()] = new Vec3(v.getX(), v.getY(), v.getZ());
-        }
-
         // Pre-calculate the known vectors that will be projected off a sound source when casting about to establish
         // reverb effects.
         for (int i = 0; i < REVERB_RAYS; i++) {
             final double longitude = MathStuff.ANGLE * i;
             final double latitude = Math.asin(((double) i / REVERB_RAYS) * 2.0D - 1.0D);
 
-            REVERB_RAY_NORMALS[i] = new Vec3(
+            final Vec3 normal = new Vec3(
                     Math.cos(latitude) * Math.cos(longitude),
                     Math.cos(latitude) * Math.sin(longitude),
                     Math.sin(latitude)
             ).normalize();
 
-            REVERB_RAY_PROJECTED[i] = REVERB_RAY_NORMALS[i].scale(MAX_REVERB_DISTANCE);
+            REVERB_RAY_NORMALS[i * 3] = normal.x;
+            REVERB_RAY_NORMALS[i * 3 + 1] = normal.y;
+            REVERB_RAY_NORMALS[i * 3 + 2] = normal.z;
         }
 
     }
 
     private final SourceContext source;
+    // Reused between calculations.  A source is only ever processed by one thread at a time.
+    private final float[] bounceRatio = new float[REVERB_RAY_BOUNCES];
+    // Level of detail selected by the last calculation
+    private TraceDetail detail = TraceDetail.FULL;
 
     public SoundFXUtils(@Nonnull final SourceContext source) {
         this.source = source;
     }
 
+    /**
+     * Estimated number of ray casts needed to perform a calculation for the sound.
+     */
+    public int getTraceCost() {
+        // Worst case each bounce casts a second ray back at the listener
+        return this.detail.getRays() * (1 + this.detail.getBounces() * 2) + OCCLUSION_SEGMENTS;
+    }
+
     public void calculate(@Nonnull final WorldContext ctx) {
+        calculate(ctx, SoundFXProcessor.getResultCache(), SoundFXProcessor.getRoomProbe());
+    }
+
+    /**
+     * Calculates the effects of the sound using the specified cache and listener probe rather than those of the
+     * sound processor.
+     *
+     * @param ctx       The current world context
+     * @param cache     Cache of prior trace results
+     * @param roomProbe Probe of the listener's surroundings, if any
+     */
+    void calculate(@Nonnull final WorldContext ctx, @Nonnull final AcousticResultCache cache, @Nullable final ListenerRoomProbe roomProbe) {
 
-        assert ctx.player != null;
-        assert ctx.world != null;
         assert this.source.getSound() != null;
 
         if (ctx.isNotValid()
@@ -155,18 +158,107 @@ public final class SoundFXUtils {
             int x = 0;
         }
 
+        // All tracing is done against the snapshot captured on the client thread
+        final AcousticSnapshot world = ctx.snapshot;
+
         // Need to offset sound toward player if it is in a solid block
-        final Vec3 soundPos = offsetPositionIfSolid(ctx.world, this.source.getPosition(), ctx.playerEyePosition);
+        final Vec3 soundPos = offsetPositionIfSolid(world, this.source.getPosition(), ctx.playerEyePosition);
 
-        final float absorptionCoeff = Effects.GLOBAL_BLOCK_ABSORPTION * 3.0F;
         final float airAbsorptionFactor = calculateWeatherAbsorption(ctx, soundPos, ctx.playerEyePosition);
-        final float occlusionAccumulation = calculateOcclusion(ctx, soundPos, ctx.playerEyePosition);
-        final float sendCoeff = -occlusionAccumulation * absorptionCoeff;
 
-        float directCutoff = (float) MathStuff.exp(sendCoeff);
+        final TraceDetail detail = TraceDetailTiers.select(this.source.getCategory(), soundPos.distanceToSqr(ctx.playerEyePosition), this.source.getSound().getVolume());
+        this.detail = detail;
+
+        final long listenerCell = ctx.playerEyePos.asLong();
+        AcousticResultCache.Result result;
+
+        // The room probe can lag the world context by an iteration, like when a sound first starts
+        final ListenerRoomProbe probe = roomProbe != null && roomProbe.isValidFor(ctx) ? roomProbe : null;
+
+        if (detail == TraceDetail.MINIMAL) {
+            // The surroundings of the sound are not going to be noticed.  Stand in the reverb of the listener's
+            // surroundings, which is shared by all such sounds, and only trace for occlusion.
+            AcousticResultCache.Result room = probe != null ? probe.room : cache.get(listenerCell, listenerCell, world.getRevision(), false, TraceDetail.FULL);
+            if (room == null) {
+                room = trace(ctx, ctx.playerEyePosition, TraceDetail.FULL, 0F, this.bounceRatio);
+                cache.put(listenerCell, listenerCell, world.getRevision(), false, TraceDetail.FULL, room);
+            }
+            result = inherit(room, calculateOcclusion(ctx, soundPos, ctx.playerEyePosition));
+        } else if (probe != null && soundPos.distanceToSqr(ctx.playerEyePosition) <= ROOM_DISTANCE_SQ && hasLineOfSight(world, soundPos, ctx.playerEyePosition)) {
+            // Close by and in plain view.  The sound is in the same space as the listener so the room applies.
+            result = probe.room;
+        } else {
+            // If neither the sound nor the listener changed cells since a prior trace the result can be reused
+            final boolean doOcclusion = Config.CLIENT.sound.enableOcclusionCalcs.get() && this.source.getCategory().doOcclusion();
+            final long sourceCell = BlockPos.asLong(MathStuff.floor(soundPos.x), MathStuff.floor(soundPos.y), MathStuff.floor(soundPos.z));
+            result = cache.get(sourceCell, listenerCell, world.getRevision(), doOcclusion, detail);
+            if (result == null) {
+                result = trace(ctx, soundPos, detail, calculateOcclusion(ctx, soundPos, ctx.playerEyePosition), this.bounceRatio);
+                cache.put(sourceCell, listenerCell, world.getRevision(), doOcclusion, detail, result);
+            }
+        }
 
         // Handle any dampening effects from the player - like head in water
-        directCutoff *= 1F - ctx.auralDampening;
+        final float directCutoff = Math.max(result.airspaceCutoff, result.directCutoff * (1F - ctx.auralDampening));
+        final float directGain = (float) MathStuff.pow(directCutoff, 0.1);
+
+        float sendCutoff0 = result.sendCutoff0;
+        float sendCutoff1 = result.sendCutoff1;
+        float sendCutoff2 = result.sendCutoff2;
+        float sendCutoff3 = result.sendCutoff3;
+
+        if (ctx.isInWater) {
+            sendCutoff0 *= 0.4F;
+            sendCutoff1 *= 0.4F;
+            sendCutoff2 *= 0.4F;
+            sendCutoff3 *= 0.4F;
+        }
+
+        // Hand off to the sound engine thread
+        final EffectParameterBuffer buffer = this.source.getParameters();
+        final float[] params = buffer.edit();
+        params[EffectParameterBuffer.ENABLED] = 1F;
+        params[EffectParameterBuffer.SEND0_GAIN] = result.sendGain0;
+        params[EffectParameterBuffer.SEND0_GAINHF] = sendCutoff0;
+        params[EffectParameterBuffer.SEND1_GAIN] = result.sendGain1;
+        params[EffectParameterBuffer.SEND1_GAINHF] = sendCutoff1;
+        params[EffectParameterBuffer.SEND2_GAIN] = result.sendGain2;
+        params[EffectParameterBuffer.SEND2_GAINHF] = sendCutoff2;
+        params[EffectParameterBuffer.SEND3_GAIN] = result.sendGain3;
+        params[EffectParameterBuffer.SEND3_GAINHF] = sendCutoff3;
+        params[EffectParameterBuffer.DIRECT_GAIN] = directGain;
+        params[EffectParameterBuffer.DIRECT_GAINHF] = directCutoff;
+        params[EffectParameterBuffer.AIR_ABSORPTION] = airAbsorptionFactor;
+        buffer.publish();
+    }
+
+    /**
+     * Casts the reverb rays for a sound.  The result is independent of the listener's state so it can be cached, and
+     * records the bounds of the blocks involved in the trace for invalidation.
+     *
+     * @param ctx                   The current world context
+     * @param soundPos              Position of the sound
+     * @param detail                Level of detail of the trace.  Cannot be MINIMAL.
+     * @param occlusionAccumulation Occlusion between the sound and the listener
+     * @param bounceRatio           Scratch space with room for each bounce
+     * @return Result of the trace
+     */
+    @Nonnull
+    static AcousticResultCache.Result trace(@Nonnull final WorldContext ctx, @Nonnull final Vec3 soundPos, @Nonnull final TraceDetail detail, final float occlusionAccumulation, @Nonnull final float[] bounceRatio) {
+
+        final AcousticSnapshot world = ctx.snapshot;
+
+        final float sendCoeff = -occlusionAccumulation * ABSORPTION_COEFF;
+
+        // Reduced detail uses an evenly spaced subset of the rays and fewer bounces
+        final int rays = detail.getRays();
+        final int bounces = detail.getBounces();
+        final int rayStride = REVERB_RAYS / rays;
+        final float recipTotalRays = 1F / (rays * bounces);
+        final float energyCoeff = 0.75F * 0.25F * recipTotalRays;
+        final float energyConst = 0.25F * 0.25F * recipTotalRays;
+
+        final float directCutoff = (float) MathStuff.exp(sendCoeff);
 
         // Calculate reverb parameters for this sound
         float sendGain0 = 0F;
@@ -180,59 +272,115 @@ public final class SoundFXUtils {
         float sendCutoff3;
 
         // Shoot rays around sound
-        final float[] bounceRatio = new float[REVERB_RAY_BOUNCES];
+        Arrays.fill(bounceRatio, 0F);
 
         float sharedAirspace = 0F;
-
-        final BlockRayTrace traceContext = new BlockRayTrace(ctx.world, ClipContext.Block.COLLIDER, ClipContext.Fluid.SOURCE_ONLY);
-
-        for (int i = 0; i < REVERB_RAYS; i++) {
-
-            Vec3 origin = soundPos;
-            Vec3 target = origin.add(REVERB_RAY_PROJECTED[i]);
-
-            BlockHitResult rayHit = traceContext.trace(origin, target);
-
-            if (isMiss(rayHit))
+        // Rays that left the snapshot under cover.  Where they would have gone is not known so they are left out.
+        int lostRays = 0;
+
+        final double soundX = soundPos.x;
+        final double soundY = soundPos.y;
+        final double soundZ = soundPos.z;
+        final double playerX = ctx.playerEyePosition.x;
+        final double playerY = ctx.playerEyePosition.y;
+        final double playerZ = ctx.playerEyePosition.z;
+
+        // Bounds of the blocks involved in the trace
+        int minX = Math.min(MathStuff.floor(soundX), ctx.playerEyePos.getX());
+        int minY = Math.min(MathStuff.floor(soundY), ctx.playerEyePos.getY());
+        int minZ = Math.min(MathStuff.floor(soundZ), ctx.playerEyePos.getZ());
+        int maxX = Math.max(MathStuff.floor(soundX), ctx.playerEyePos.getX());
+        int maxY = Math.max(MathStuff.floor(soundY), ctx.playerEyePos.getY());
+        int maxZ = Math.max(MathStuff.floor(soundZ), ctx.playerEyePos.getZ());
+
+        final AcousticRayMarcher marcher = AcousticRayMarcher.get();
+        final AcousticRayMarcher.Hit rayHit = marcher.hit();
+
+        for (int i = 0; i < rays; i++) {
+
+            final int normal = i * rayStride * 3;
+            double rayDirX = REVERB_RAY_NORMALS[normal];
+            double rayDirY = REVERB_RAY_NORMALS[normal + 1];
+            double rayDirZ = REVERB_RAY_NORMALS[normal + 2];
+
+            if (!marcher.trace(world, ClipContext.Block.COLLIDER, soundX, soundY, soundZ,
+                    soundX + rayDirX * MAX_REVERB_DISTANCE, soundY + rayDirY * MAX_REVERB_DISTANCE, soundZ + rayDirZ * MAX_REVERB_DISTANCE)) {
+                if (rayHit.lost)
+                    lostRays++;
                 continue;
+            }
 
-            // Additional bounces
-            BlockPos lastHitBlock = rayHit.getBlockPos();
-            Vec3 lastHitPos = rayHit.getLocation();
-            Vec3 lastHitNormal = surfaceNormal(rayHit.getDirection());
-            Vec3 lastRayDir = REVERB_RAY_NORMALS[i];
-
-            double totalRayDistance = origin.distanceTo(rayHit.getLocation());
+            // Capture the hit details since the marcher result is reused by subsequent traces
+            double lastHitX = rayHit.x;
+            double lastHitY = rayHit.y;
+            double lastHitZ = rayHit.z;
+            int lastHitBlockX = rayHit.blockX;
+            int lastHitBlockY = rayHit.blockY;
+            int lastHitBlockZ = rayHit.blockZ;
+            int lastHitNormalX = rayHit.normalX;
+            int lastHitNormalY = rayHit.normalY;
+            int lastHitNormalZ = rayHit.normalZ;
+
+            minX = Math.min(minX, lastHitBlockX);
+            minY = Math.min(minY, lastHitBlockY);
+            minZ = Math.min(minZ, lastHitBlockZ);
+            maxX = Math.max(maxX, lastHitBlockX);
+            maxY = Math.max(maxY, lastHitBlockY);
+            maxZ = Math.max(maxZ, lastHitBlockZ);
+
+            double totalRayDistance = rayHit.distance(soundX, soundY, soundZ);
 
             // Secondary ray bounces
-            for (int j = 0; j < REVERB_RAY_BOUNCES; j++) {
+            for (int j = 0; j < bounces; j++) {
+
+                final float blockReflectivity = world.getReflectivity(lastHitBlockX, lastHitBlockY, lastHitBlockZ);
+                final float energyTowardsPlayer = blockReflectivity * energyCoeff + energyConst;
+
+                // Surface normals are axis aligned so the reflection flips the component along the normal
+                if (lastHitNormalX != 0) rayDirX = -rayDirX;
+                if (lastHitNormalY != 0) rayDirY = -rayDirY;
+                if (lastHitNormalZ != 0) rayDirZ = -rayDirZ;
 
-                final float blockReflectivity = AudioEffectLibrary.getReflectivity(ctx.world.getBlockState(lastHitBlock));
-                final float energyTowardsPlayer = blockReflectivity * ENERGY_COEFF + ENERGY_CONST;
+                final double originX = lastHitX + rayDirX * 0.01D;
+                final double originY = lastHitY + rayDirY * 0.01D;
+                final double originZ = lastHitZ + rayDirZ * 0.01D;
 
-                final Vec3 newRayDir = MathStuff.reflection(lastRayDir, lastHitNormal);
-                origin = MathStuff.addScaled(lastHitPos, newRayDir, 0.01F);
-                target = MathStuff.addScaled(origin, newRayDir, MAX_REVERB_DISTANCE);
+                final boolean isHit = marcher.trace(world, ClipContext.Block.COLLIDER, originX, originY, originZ,
+                        originX + rayDirX * MAX_REVERB_DISTANCE, originY + rayDirY * MAX_REVERB_DISTANCE, originZ + rayDirZ * MAX_REVERB_DISTANCE);
 
-                rayHit = traceContext.trace(origin, target);
+                // Stop at the edge of the snapshot rather than treat the unknown beyond as open air
+                if (rayHit.lost)
+                    break;
 
-                if (isMiss(rayHit)) {
-                    totalRayDistance += lastHitPos.distanceTo(ctx.playerEyePosition);
+                if (!isHit) {
+                    totalRayDistance += distance(lastHitX, lastHitY, lastHitZ, playerX, playerY, playerZ);
                 } else {
 
                     bounceRatio[j] += blockReflectivity;
-                    totalRayDistance += lastHitPos.distanceTo(rayHit.getLocation());
-
-                    lastHitPos = rayHit.getLocation();
-                    lastHitNormal = surfaceNormal(rayHit.getDirection());
-                    lastRayDir = newRayDir;
-                    lastHitBlock = rayHit.getBlockPos();
+                    totalRayDistance += rayHit.distance(lastHitX, lastHitY, lastHitZ);
+
+                    lastHitX = rayHit.x;
+                    lastHitY = rayHit.y;
+                    lastHitZ = rayHit.z;
+                    lastHitBlockX = rayHit.blockX;
+                    lastHitBlockY = rayHit.blockY;
+                    lastHitBlockZ = rayHit.blockZ;
+                    lastHitNormalX = rayHit.normalX;
+                    lastHitNormalY = rayHit.normalY;
+                    lastHitNormalZ = rayHit.normalZ;
+
+                    minX = Math.min(minX, lastHitBlockX);
+                    minY = Math.min(minY, lastHitBlockY);
+                    minZ = Math.min(minZ, lastHitBlockZ);
+                    maxX = Math.max(maxX, lastHitBlockX);
+                    maxY = Math.max(maxY, lastHitBlockY);
+                    maxZ = Math.max(maxZ, lastHitBlockZ);
 
                     // Cast a ray back at the player.  If it is a miss there is a path back from the reflection
                     // point to the player meaning they share the same airspace.
-                    final Vec3 finalRayStart = MathStuff.addScaled(lastHitPos, lastHitNormal, 0.01F);
-                    final BlockHitResult finalRayHit = traceContext.trace(finalRayStart, ctx.playerEyePosition);
-                    if (isMiss(finalRayHit)) {
+                    if (!marcher.trace(world, ClipContext.Block.COLLIDER,
+                            lastHitX + lastHitNormalX * 0.01D, lastHitY + lastHitNormalY * 0.01D, lastHitZ + lastHitNormalZ * 0.01D,
+                            playerX, playerY, playerZ)) {
                         sharedAirspace += 1.0F;
                     }
                 }
@@ -251,18 +399,27 @@ public final class SoundFXUtils {
                 sendGain3 += cross3 * energyTowardsPlayer * 12.8F;
 
                 // Nowhere to bounce off of, stop bouncing!
-                if (isMiss(rayHit)) {
+                if (!isHit) {
                     break;
                 }
             }
         }
 
-        bounceRatio[0] = bounceRatio[0] / REVERB_RAYS;
-        bounceRatio[1] = bounceRatio[1] / REVERB_RAYS;
-        bounceRatio[2] = bounceRatio[2] / REVERB_RAYS;
-        bounceRatio[3] = bounceRatio[3] / REVERB_RAYS;
+        // Scale up what the known rays found to stand in for the lost ones
+        final int knownRays = Math.max(rays - lostRays, 1);
+        final float lostScale = (float) rays / knownRays;
+        sendGain0 *= lostScale;
+        sendGain1 *= lostScale;
+        sendGain2 *= lostScale;
+        sendGain3 *= lostScale;
+
+        for (int j = 0; j < bounces; j++)
+            bounceRatio[j] = bounceRatio[j] / knownRays;
+        // Later bounces that were not traced are assumed to behave like the last one that was
+        for (int j = bounces; j < REVERB_RAY_BOUNCES; j++)
+            bounceRatio[j] = bounceRatio[bounces - 1];
 
-        sharedAirspace *= RECIP_TOTAL_RAYS * 64F;
+        sharedAirspace *= recipTotalRays * lostScale * 64F;
 
         final float sharedAirspaceWeight0 = MathStuff.clamp1(sharedAirspace / 20.0F);
         final float sharedAirspaceWeight1 = MathStuff.clamp1(sharedAirspace / 15.0F);
@@ -278,9 +435,7 @@ public final class SoundFXUtils {
 
         final float averageSharedAirspace = (sharedAirspaceWeight0 + sharedAirspaceWeight1 + sharedAirspaceWeight2
                 + sharedAirspaceWeight3) * 0.25F;
-        directCutoff = Math.max((float) Math.sqrt(averageSharedAirspace) * 0.2F, directCutoff);
-
-        float directGain = (float) MathStuff.pow(directCutoff, 0.1);
+        final float airspaceCutoff = (float) Math.sqrt(averageSharedAirspace) * 0.2F;
 
         sendGain1 *= bounceRatio[1];
         sendGain2 *= (float) MathStuff.pow(bounceRatio[2], 3.0);
@@ -296,62 +451,37 @@ public final class SoundFXUtils {
         sendGain2 *= (float) MathStuff.pow(sendCutoff2, 0.1);
         sendGain3 *= (float) MathStuff.pow(sendCutoff3, 0.1);
 
-        if (ctx.player.isInWater()) {
-            sendCutoff0 *= 0.4F;
-            sendCutoff1 *= 0.4F;
-            sendCutoff2 *= 0.4F;
-            sendCutoff3 *= 0.4F;
-        }
-
-        final LowPassData lp0 = this.source.getLowPass0();
-        final LowPassData lp1 = this.source.getLowPass1();
-        final LowPassData lp2 = this.source.getLowPass2();
-        final LowPassData lp3 = this.source.getLowPass3();
-        final LowPassData direct = this.source.getDirect();
-        final SourcePropertyFloat prop = this.source.getAirAbsorb();
-
-        synchronized (this.source.sync()) {
-            lp0.gain = sendGain0;
-            lp0.gainHF = sendCutoff0;
-            lp0.setProcess(true);
-
-            lp1.gain = sendGain1;
-            lp1.gainHF = sendCutoff1;
-            lp1.setProcess(true);
-
-            lp2.gain = sendGain2;
-            lp2.gainHF = sendCutoff2;
-            lp2.setProcess(true);
-
-            lp3.gain = sendGain3;
-            lp3.gainHF = sendCutoff3;
-            lp3.setProcess(true);
-
-            direct.gain = directGain;
-            direct.gainHF = directCutoff;
-            direct.setProcess(true);
+        // Pad the bounds by a block to pick up changes to the neighbors of the surfaces that were hit
+        return new AcousticResultCache.Result(directCutoff, airspaceCutoff,
+                sendGain0, sendGain1, sendGain2, sendGain3,
+                sendCutoff0, sendCutoff1, sendCutoff2, sendCutoff3,
+                minX - 1, minY - 1, minZ - 1, maxX + 1, maxY + 1, maxZ + 1);
+    }
 
-            prop.setValue(airAbsorptionFactor);
-            prop.setProcess(true);
-        }
+    /**
+     * Combines the reverb of the listener's surroundings with the occlusion of a sound.  The result is not cached.
+     */
+    @Nonnull
+    private static AcousticResultCache.Result inherit(@Nonnull final AcousticResultCache.Result room, final float occlusionAccumulation) {
+        final float sendCoeff = -occlusionAccumulation * ABSORPTION_COEFF;
+        final float exp1 = (float) MathStuff.exp(sendCoeff);
+        final float exp2 = (float) MathStuff.exp(sendCoeff * 1.5F);
+        final float gain1 = (float) MathStuff.pow(exp1, 0.1);
+        final float gain2 = (float) MathStuff.pow(exp2, 0.1);
+        return new AcousticResultCache.Result(exp1, 0F,
+                room.sendGain0 * gain1, room.sendGain1 * gain1, room.sendGain2 * gain2, room.sendGain3 * gain2,
+                room.sendCutoff0 * exp1, room.sendCutoff1 * exp1, room.sendCutoff2 * exp2, room.sendCutoff3 * exp2,
+                0, 0, 0, 0, 0, 0);
     }
 
     private void clearSettings() {
-        synchronized (this.source.sync()) {
-            source.getLowPass0().setProcess(false);
-            source.getLowPass1().setProcess(false);
-            source.getLowPass2().setProcess(false);
-            source.getLowPass3().setProcess(false);
-            source.getDirect().setProcess(false);
-            source.getAirAbsorb().setProcess(false);
-        }
+        final EffectParameterBuffer buffer = this.source.getParameters();
+        buffer.edit()[EffectParameterBuffer.ENABLED] = 0F;
+        buffer.publish();
     }
 
     private float calculateOcclusion(@Nonnull final WorldContext ctx, @Nonnull final Vec3 origin, @Nonnull final Vec3 target) {
 
-        assert ctx.world != null;
-        assert ctx.player != null;
-
         // If occlusion is not enabled, short cut
         if (!Config.CLIENT.sound.enableOcclusionCalcs.get())
             return 0F;
@@ -363,22 +493,43 @@ public final class SoundFXUtils {
         float factor = 0F;
 
         if (Config.CLIENT.sound.enableOcclusionCalcs.get()) {
-            Vec3 lastHit = origin;
-            BlockState lastState = ctx.world.getBlockState(new BlockPos(lastHit.x(), lastHit.y(), lastHit.z()));
-            final BlockRayTrace traceContext = new BlockRayTrace(ctx.world, origin, target, ClipContext.Block.VISUAL, ClipContext.Fluid.SOURCE_ONLY);
-            final Iterator<BlockHitResult> itr = new RayTraceIterator(traceContext);
+            final AcousticSnapshot world = ctx.snapshot;
+            final AcousticRayMarcher marcher = AcousticRayMarcher.get();
+            final AcousticRayMarcher.Hit hit = marcher.hit();
+
+            // Direction of travel used to step past a block once it has been hit
+            final double length = distance(origin.x, origin.y, origin.z, target.x, target.y, target.z);
+            if (length == 0)
+                return 0F;
+            final double dirX = (target.x - origin.x) / length;
+            final double dirY = (target.y - origin.y) / length;
+            final double dirZ = (target.z - origin.z) / length;
+            final int targetX = MathStuff.floor(target.x);
+            final int targetY = MathStuff.floor(target.y);
+            final int targetZ = MathStuff.floor(target.z);
+
+            double lastHitX = origin.x;
+            double lastHitY = origin.y;
+            double lastHitZ = origin.z;
+            float lastOcclusion = world.getOcclusion(MathStuff.floor(lastHitX), MathStuff.floor(lastHitY), MathStuff.floor(lastHitZ));
+
             for (int i = 0; i < OCCLUSION_SEGMENTS; i++) {
-                if (itr.hasNext()) {
-                    final BlockHitResult result = itr.next();
-                    final float occlusion = AudioEffectLibrary.getOcclusion(lastState);
-                    final double distance = lastHit.distanceTo(result.getLocation());
-                    // Occlusion is scaled by the distance travelled through the block.
-                    factor += occlusion * distance;
-                    lastHit = result.getLocation();
-                    lastState = ctx.world.getBlockState(result.getBlockPos());
-                } else {
+                final double startX = i == 0 ? lastHitX : lastHitX + dirX;
+                final double startY = i == 0 ? lastHitY : lastHitY + dirY;
+                final double startZ = i == 0 ? lastHitZ : lastHitZ + dirZ;
+                if (!marcher.trace(world, ClipContext.Block.VISUAL, startX, startY, startZ, target.x, target.y, target.z))
+                    break;
+
+                // Occlusion is scaled by the distance travelled through the block.
+                factor += lastOcclusion * hit.distance(lastHitX, lastHitY, lastHitZ);
+                lastHitX = hit.x;
+                lastHitY = hit.y;
+                lastHitZ = hit.z;
+                lastOcclusion = world.getOcclusion(hit.blockX, hit.blockY, hit.blockZ);
+
+                // Reached the block the listener is in
+                if (hit.blockX == targetX && hit.blockY == targetY && hit.blockZ == targetZ)
                     break;
-                }
             }
         }
 
@@ -386,47 +537,44 @@ public final class SoundFXUtils {
     }
 
     private static float calculateWeatherAbsorption(@Nonnull final WorldContext ctx, @Nonnull final Vec3 pt1, @Nonnull final Vec3 pt2) {
-        assert ctx.world != null;
-
         if (!ctx.isPrecipitating)
             return 1F;
 
-        final BlockPos low = new BlockPos(pt1);
-        final BlockPos mid = new BlockPos(MathStuff.addScaled(pt1, pt2, 0.5F));
-        final BlockPos high = new BlockPos(pt2);
-
-        // Determine the precipitation type at each point
-        final Biome.Precipitation rt1 = WorldUtils.getCurrentPrecipitationAt(ctx.world, low);
-        final Biome.Precipitation rt2 = WorldUtils.getCurrentPrecipitationAt(ctx.world, mid);
-        final Biome.Precipitation rt3 = WorldUtils.getCurrentPrecipitationAt(ctx.world, high);
-
-        // Calculate the impact of weather on dampening
-        float factor = calcFactor(rt1, 0.25F);
-        factor += calcFactor(rt2, 0.5F);
-        factor += calcFactor(rt3, 0.25F);
+        // Sample about once per cell along the path and average, the ends counting half
+        final PrecipitationMap precipitation = ctx.getPrecipitation();
+        final double length = pt1.distanceTo(pt2);
+        final int segments = Mth.clamp((int) (length / PrecipitationMap.CELL_SIZE) + 1, 2, MAX_WEATHER_SEGMENTS);
+        float factor = 0F;
+        for (int i = 0; i <= segments; i++) {
+            final double t = (double) i / segments;
+            final float sample = precipitation.getAbsorption(
+                    Mth.lerp(t, pt1.x, pt2.x),
+                    Mth.lerp(t, pt1.y, pt2.y),
+                    Mth.lerp(t, pt1.z, pt2.z));
+            factor += (i == 0 || i == segments) ? sample * 0.5F : sample;
+        }
+        factor /= segments;
         factor *= ctx.precipitationStrength;
 
         return factor;
     }
 
-    @Nonnull
-    private static Vec3 surfaceNormal(@Nonnull final Direction d) {
-        return SURFACE_DIRECTION_NORMALS[d.ordinal()];
+    private static boolean hasLineOfSight(@Nonnull final AcousticSnapshot world, @Nonnull final Vec3 origin, @Nonnull final Vec3 target) {
+        return !AcousticRayMarcher.get().trace(world, ClipContext.Block.VISUAL, origin.x, origin.y, origin.z, target.x, target.y, target.z);
     }
 
-    private static Vec3 offsetPositionIfSolid(@Nonnull final LevelReader world, @Nonnull final Vec3 origin, @Nonnull final Vec3 target) {
+    private static double distance(final double x1, final double y1, final double z1, final double x2, final double y2, final double z2) {
+        final double dx = x2 - x1;
+        final double dy = y2 - y1;
+        final double dz = z2 - z1;
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    private static Vec3 offsetPositionIfSolid(@Nonnull final BlockGetter world, @Nonnull final Vec3 origin, @Nonnull final Vec3 target) {
         if (!WorldUtils.isAirBlock(world, new BlockPos(origin))) {
             return MathStuff.addScaled(origin, MathStuff.normalize(origin, target), 0.876F);
         }
         return origin;
     }
 
-    private static float calcFactor(@Nonnull final Biome.Precipitation type, final float base) {
-        return type == Biome.Precipitation.NONE ? base : base * (type == Biome.Precipitation.SNOW ? Effects.SNOW_AIR_ABSORPTION_FACTOR : Effects.RAIN_AIR_ABSORPTION_FACTOR);
-    }
-
-    private static boolean isMiss(@Nullable final BlockHitResult result) {
-        return result == null || result.getType() == HitResult.Type.MISS;
-    }
-
 }
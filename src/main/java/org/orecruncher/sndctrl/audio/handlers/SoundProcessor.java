@@ -34,7 +34,6 @@ import org.orecruncher.lib.TickCounter;
 import org.orecruncher.lib.math.MathStuff;
 import org.orecruncher.sndctrl.config.Config;
 import org.orecruncher.sndctrl.SoundControl;
-import org.orecruncher.sndctrl.audio.SoundUtils;
 import org.orecruncher.sndctrl.library.IndividualSoundConfig;
 
 import javax.annotation.Nonnull;
@@ -130,9 +129,9 @@ public final class SoundProcessor {
 
     // Event handler for sound plays - hooked in static class initializer
     private static void soundPlay(@Nonnull final PlaySoundEvent e) {
-        // If there is no sound assigned, or if there is no more room in the play lists kill it
+        // If there is no sound assigned kill it
         final SoundInstance theSound = e.getSound();
-        if (theSound == null || !SoundUtils.hasRoom()) {
+        if (theSound == null) {
             e.setResultSound(null);
             return;
         }
@@ -19,38 +19,46 @@
 package org.orecruncher.sndctrl.audio.handlers;
 
 import com.google.common.base.MoreObjects;
+import net.minecraft.client.resources.sounds.EntityBoundSoundInstance;
 import net.minecraft.client.resources.sounds.SoundInstance;
+import net.minecraft.client.resources.sounds.TickableSoundInstance;
 import net.minecraft.world.phys.Vec3;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import org.lwjgl.openal.EXTEfx;
 import org.orecruncher.lib.logging.IModLog;
-import org.orecruncher.lib.random.LCGRandom;
+import org.orecruncher.lib.math.MathStuff;
 import org.orecruncher.sndctrl.SoundControl;
 import org.orecruncher.sndctrl.api.sound.Category;
 import org.orecruncher.sndctrl.api.sound.ISoundCategory;
 import org.orecruncher.sndctrl.audio.SoundUtils;
+import org.orecruncher.sndctrl.audio.handlers.effects.EffectParameterBuffer;
 import org.orecruncher.sndctrl.audio.handlers.effects.LowPassData;
 import org.orecruncher.sndctrl.audio.handlers.effects.SourcePropertyFloat;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.concurrent.Callable;
+import java.util.Arrays;
 
 /**
- * Used to track and apply sound effects for a given sound instance in the sound engine.  It is also a task to
- * facilitate queuing to background processing.
+ * Used to track and apply sound effects for a given sound instance in the sound engine.
  */
 @OnlyIn(Dist.CLIENT)
-public final class SourceContext implements Callable<Void> {
+public final class SourceContext {
 
     private static final IModLog LOGGER = SoundControl.LOGGER.createChild(SourceContext.class);
-    // Lightweight randomizer used to distribute updates across an interval
-    private static final LCGRandom RANDOM = new LCGRandom();
-    // Frequency of sound effect updates in thread schedule ticks.  Works out to be 3 times a second.
-    private static final int UPDATE_FEQUENCY_TICKS = 7;
-
-    private final Object sync = new Object();
+    // Bounds, in thread schedule ticks, on how often the effects of a sound are recalculated.  The slowest works
+    // out to be once a second.
+    private static final float MIN_UPDATE_INTERVAL = 2F;
+    private static final float MAX_UPDATE_INTERVAL = 20F;
+    // Squared distance a sound has to move since its last update to be considered moving
+    private static final double MOVEMENT_THRESHOLD_SQ = 0.25D * 0.25D;
+
+    private final EffectParameterBuffer parameters = new EffectParameterBuffer();
+    // Only touched by the sound engine thread.  Applied holds the parameters last uploaded to OpenAL so unchanged
+    // values can be skipped.  It starts out as NaN so the first upload is complete; the source id may have been
+    // used by an earlier sound and still has its filters attached.
+    private final float[] applied = new float[EffectParameterBuffer.SIZE];
     private final LowPassData lowPass0;
     private final LowPassData lowPass1;
     private final LowPassData lowPass2;
@@ -64,7 +72,8 @@ public final class SourceContext implements Callable<Void> {
     private ISoundCategory category = Category.MASTER;
 
     private boolean isEnabled;
-    private int updateCount;
+    private int age;
+    private float urgency;
 
     public SourceContext() {
         this.lowPass0 = new LowPassData();
@@ -74,13 +83,10 @@ public final class SourceContext implements Callable<Void> {
         this.direct = new LowPassData();
         this.airAbsorb = new SourcePropertyFloat(EXTEfx.AL_AIR_ABSORPTION_FACTOR, EXTEfx.AL_DEFAULT_AIR_ABSORPTION_FACTOR, EXTEfx.AL_MIN_AIR_ABSORPTION_FACTOR, EXTEfx.AL_MAX_AIR_ABSORPTION_FACTOR);
         this.pos = Vec3.ZERO;
+        Arrays.fill(this.applied, Float.NaN);
         this.fxProcessor = new SoundFXUtils(this);
     }
 
-    public Object sync() {
-        return this.sync;
-    }
-
     public boolean isEnabled() {
         return this.isEnabled;
     }
@@ -89,34 +95,12 @@ public final class SourceContext implements Callable<Void> {
         this.isEnabled = true;
     }
 
+    /**
+     * Buffer used to hand calculated effect parameters to the sound engine thread.
+     */
     @Nonnull
-    public LowPassData getLowPass0() {
-        return this.lowPass0;
-    }
-
-    @Nonnull
-    public LowPassData getLowPass1() {
-        return this.lowPass1;
-    }
-
-    @Nonnull
-    public LowPassData getLowPass2() {
-        return this.lowPass2;
-    }
-
-    @Nonnull
-    public LowPassData getLowPass3() {
-        return this.lowPass3;
-    }
-
-    @Nonnull
-    public LowPassData getDirect() {
-        return this.direct;
-    }
-
-    @Nonnull
-    public SourcePropertyFloat getAirAbsorb() {
-        return this.airAbsorb;
+    public EffectParameterBuffer getParameters() {
+        return this.parameters;
     }
 
     @Nonnull
@@ -145,55 +129,150 @@ public final class SourceContext implements Callable<Void> {
      * can happen.
      */
     public void tick(final int sourceId) {
-        if (isEnabled()) {
-            synchronized (this.sync()) {
-                // Upload the data
-                Effects.filter0.apply(sourceId, this.lowPass0, 0, Effects.auxSlot0);
-                Effects.filter1.apply(sourceId, this.lowPass1, 1, Effects.auxSlot1);
-                Effects.filter2.apply(sourceId, this.lowPass2, 2, Effects.auxSlot2);
-                Effects.filter3.apply(sourceId, this.lowPass3, 3, Effects.auxSlot3);
-                Effects.direct.apply(sourceId, this.direct);
+        // Only sources with newly published parameters touch OpenAL.  OpenAL keeps what was uploaded, so there is
+        // nothing to do until the calculation produces something new.
+        if (isEnabled() && this.parameters.acquire()) {
+            if (upload(sourceId, this.parameters.front()))
+                SoundFXProcessor.validate("SourceHandler::tick");
+        }
+    }
 
-                this.airAbsorb.apply(sourceId);
+    /**
+     * Uploads the parameters that differ from what was last applied to the source.
+     *
+     * @param sourceId Source to upload to
+     * @param params   Parameters to upload
+     * @return true if anything was uploaded; false otherwise
+     */
+    private boolean upload(final int sourceId, @Nonnull final float[] params) {
+        final boolean enabled = params[EffectParameterBuffer.ENABLED] != 0F;
+        // When disabled the rest of the buffer is stale, so only a change in state matters
+        final boolean toggled = params[EffectParameterBuffer.ENABLED] != this.applied[EffectParameterBuffer.ENABLED];
+        boolean dirty = false;
+
+        if (toggled || (enabled && changed(params, EffectParameterBuffer.SEND0_GAIN, EffectParameterBuffer.SEND0_GAINHF))) {
+            load(this.lowPass0, enabled, params[EffectParameterBuffer.SEND0_GAIN], params[EffectParameterBuffer.SEND0_GAINHF]);
+            Effects.filter0.apply(sourceId, this.lowPass0, 0, Effects.auxSlot0);
+            dirty = true;
+        }
+        if (toggled || (enabled && changed(params, EffectParameterBuffer.SEND1_GAIN, EffectParameterBuffer.SEND1_GAINHF))) {
+            load(this.lowPass1, enabled, params[EffectParameterBuffer.SEND1_GAIN], params[EffectParameterBuffer.SEND1_GAINHF]);
+            Effects.filter1.apply(sourceId, this.lowPass1, 1, Effects.auxSlot1);
+            dirty = true;
+        }
+        if (toggled || (enabled && changed(params, EffectParameterBuffer.SEND2_GAIN, EffectParameterBuffer.SEND2_GAINHF))) {
+            load(this.lowPass2, enabled, params[EffectParameterBuffer.SEND2_GAIN], params[EffectParameterBuffer.SEND2_GAINHF]);
+            Effects.filter2.apply(sourceId, this.lowPass2, 2, Effects.auxSlot2);
+            dirty = true;
+        }
+        if (toggled || (enabled && changed(params, EffectParameterBuffer.SEND3_GAIN, EffectParameterBuffer.SEND3_GAINHF))) {
+            load(this.lowPass3, enabled, params[EffectParameterBuffer.SEND3_GAIN], params[EffectParameterBuffer.SEND3_GAINHF]);
+            Effects.filter3.apply(sourceId, this.lowPass3, 3, Effects.auxSlot3);
+            dirty = true;
+        }
+        if (toggled || (enabled && changed(params, EffectParameterBuffer.DIRECT_GAIN, EffectParameterBuffer.DIRECT_GAINHF))) {
+            load(this.direct, enabled, params[EffectParameterBuffer.DIRECT_GAIN], params[EffectParameterBuffer.DIRECT_GAINHF]);
+            Effects.direct.apply(sourceId, this.direct);
+            dirty = true;
+        }
+        if (enabled && (toggled || changed(params, EffectParameterBuffer.AIR_ABSORPTION, EffectParameterBuffer.AIR_ABSORPTION))) {
+            this.airAbsorb.setValue(params[EffectParameterBuffer.AIR_ABSORPTION]);
+            this.airAbsorb.setProcess(true);
+            this.airAbsorb.apply(sourceId);
+            dirty = true;
+        }
 
-                SoundFXProcessor.validate("SourceHandler::tick");
-            }
+        System.arraycopy(params, 0, this.applied, 0, EffectParameterBuffer.SIZE);
+        return dirty;
+    }
+
+    private boolean changed(@Nonnull final float[] params, final int gain, final int gainHF) {
+        return params[gain] != this.applied[gain] || params[gainHF] != this.applied[gainHF];
+    }
+
+    private static void load(@Nonnull final LowPassData data, final boolean enabled, final float gain, final float gainHF) {
+        if (enabled) {
+            data.gain = gain;
+            data.gainHF = gainHF;
         }
+        data.setProcess(enabled);
     }
 
     /**
-     * Called by the sound processing thread when scheduling work items for sound updates.  This routine should only
-     * be called by the background thread.
+     * Called by the sound processing thread each iteration to refresh how urgently the source needs its effects
+     * recalculated.  Sounds that are near, loud, or moving want updates more often than those that are far away,
+     * quiet, or stationary.  This routine should only be called by the background thread.
      *
-     * @return true the work item should be scheduled; false otherwise
+     * @param ctx The current world context
+     * @return Urgency of the update.  Values of 1 or more indicate the source is due.
      */
-    public boolean shouldExecute() {
-        // If brand new randomize the start time
-        if (this.updateCount == 0) {
-            this.updateCount = RANDOM.nextInt(UPDATE_FEQUENCY_TICKS);
+    public float updateUrgency(@Nonnull final WorldContext ctx) {
+        this.age++;
+
+        float interval = MAX_UPDATE_INTERVAL;
+        final SoundInstance s = this.sound;
+        if (s != null && !ctx.isNotValid()) {
+            final double x = s.getX();
+            final double y = s.getY();
+            final double z = s.getZ();
+
+            // Distance is relative to the range at which the sound can be heard
+            float scale = 0F;
+            if (!s.isRelative() && s.getAttenuation() != SoundInstance.Attenuation.NONE) {
+                final float range = Math.max(s.getSound().getAttenuationDistance(), 1);
+                scale = MathStuff.clamp1((float) Math.sqrt(ctx.playerEyePosition.distanceToSqr(x, y, z)) / range);
+            }
+
+            // Louder sounds are more noticeable
+            scale *= 1F - MathStuff.clamp1(s.getVolume()) * 0.5F;
+
+            // Moving sounds need to keep up with their position.  Entity sounds are likely to start moving.
+            if (this.pos.distanceToSqr(x, y, z) > MOVEMENT_THRESHOLD_SQ)
+                scale *= 0.25F;
+            else if (s instanceof EntityBoundSoundInstance || s instanceof TickableSoundInstance)
+                scale *= 0.5F;
+
+            interval = MIN_UPDATE_INTERVAL + (MAX_UPDATE_INTERVAL - MIN_UPDATE_INTERVAL) * scale;
         }
-        return (this.updateCount++ % UPDATE_FEQUENCY_TICKS) == 0;
+
+        this.urgency = this.age / interval;
+        return this.urgency;
     }
 
-    @Override
-    public Void call() throws Exception {
-        captureState();
-        updateImpl();
-        return null;
+    /**
+     * Urgency as of the last call to updateUrgency().
+     */
+    public float getUrgency() {
+        return this.urgency;
+    }
+
+    /**
+     * Estimated number of ray casts needed to recalculate the effects of the sound.
+     */
+    public int getUpdateCost() {
+        return this.fxProcessor.getTraceCost();
+    }
+
+    /**
+     * Called by the sound processing thread when the source has been scheduled for an update.
+     */
+    public void scheduled() {
+        this.age = 0;
     }
 
     /**
      * Called by the thread pool when executing the task
      *
+     * @param ctx World context to calculate against.  Must be retained by the caller.
      */
-    public final void exec() {
+    public final void exec(@Nonnull final WorldContext ctx) {
         captureState();
-        updateImpl();
+        updateImpl(ctx);
     }
 
-    private void updateImpl() {
+    private void updateImpl(@Nonnull final WorldContext ctx) {
         try {
-            this.fxProcessor.calculate(SoundFXProcessor.getWorldContext());
+            this.fxProcessor.calculate(ctx);
         } catch(@Nonnull final Throwable t) {
             LOGGER.error(t, "Error processing SoundContext %s", toString());
         }
@@ -0,0 +1,101 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Consumer;
+
+/**
+ * Decides which sound sources get their effects recalculated on an iteration of the sound processor.  Each
+ * iteration has a fixed budget of ray casts.  Sources that are due are serviced in order of urgency until the budget
+ * is spent, and whatever is left waits for the next iteration.  Unspent budget carries over so that a quiet
+ * iteration can absorb a burst of new sounds.  Only to be used from the sound processor thread.
+ */
+@OnlyIn(Dist.CLIENT)
+final class SourceScheduler {
+
+    // Number of ray casts that can be scheduled per iteration
+    private static final int RAY_BUDGET = 8192;
+    // Limit on the unspent budget that can be carried over to the next iteration
+    private static final int MAX_CARRY = RAY_BUDGET;
+    private static final Comparator<SourceContext> BY_URGENCY = (c1, c2) -> Float.compare(c2.getUrgency(), c1.getUrgency());
+
+    private SourceContext[] due = new SourceContext[256];
+    private int carry;
+    private int scheduled;
+    private int queueDepth;
+
+    /**
+     * Selects the sources to update this iteration and hands them to the dispatcher in order of urgency.
+     *
+     * @param sources  Sparse array of the sources that are playing
+     * @param ctx      The current world context
+     * @param dispatch Receives the sources selected for update
+     */
+    public void schedule(@Nonnull final SourceContext[] sources, @Nonnull final WorldContext ctx, @Nonnull final Consumer<SourceContext> dispatch) {
+
+        int count = 0;
+        for (final SourceContext source : sources) {
+            if (source != null && source.updateUrgency(ctx) >= 1F) {
+                if (count == this.due.length)
+                    this.due = Arrays.copyOf(this.due, count * 2);
+                this.due[count++] = source;
+            }
+        }
+
+        if (count > 1)
+            Arrays.sort(this.due, 0, count, BY_URGENCY);
+
+        int budget = RAY_BUDGET + this.carry;
+        int i = 0;
+        for (; i < count; i++) {
+            final SourceContext source = this.due[i];
+            final int cost = source.getUpdateCost();
+            // Always make progress on the most urgent source, even if it is over budget
+            if (cost > budget && i > 0)
+                break;
+            budget -= cost;
+            source.scheduled();
+            dispatch.accept(source);
+        }
+
+        this.carry = Math.max(Math.min(budget, MAX_CARRY), 0);
+        this.scheduled = i;
+        this.queueDepth = count - i;
+
+        // Don't hang onto sources that may stop playing
+        Arrays.fill(this.due, 0, count, null);
+    }
+
+    public void reset() {
+        this.carry = 0;
+        this.scheduled = 0;
+        this.queueDepth = 0;
+    }
+
+    @Nonnull
+    public String getDiagnosticString() {
+        return String.format("SoundFX Queue: %d scheduled, %d waiting, %d carry", this.scheduled, this.queueDepth, this.carry);
+    }
+}
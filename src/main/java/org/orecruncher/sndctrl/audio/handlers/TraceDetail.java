@@ -0,0 +1,56 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+/**
+ * Level of detail used when tracing the effects of a sound.  Sounds that are close to the listener get the full
+ * reverb probe, those further out get a reduced one, and distant or quiet sounds only get an occlusion ray with the
+ * reverb of the listener's surroundings standing in for their own.
+ */
+@OnlyIn(Dist.CLIENT)
+public enum TraceDetail {
+    FULL(32, 4),
+    REDUCED(16, 2),
+    MINIMAL(0, 0);
+
+    private final int rays;
+    private final int bounces;
+
+    TraceDetail(final int rays, final int bounces) {
+        this.rays = rays;
+        this.bounces = bounces;
+    }
+
+    /**
+     * Number of primary reverb rays to cast
+     */
+    public int getRays() {
+        return this.rays;
+    }
+
+    /**
+     * Number of times each reverb ray can bounce
+     */
+    public int getBounces() {
+        return this.bounces;
+    }
+}
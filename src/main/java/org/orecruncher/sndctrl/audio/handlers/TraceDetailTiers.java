@@ -0,0 +1,115 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.eventbus.api.EventPriority;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.config.ModConfig;
+import org.orecruncher.lib.logging.IModLog;
+import org.orecruncher.sndctrl.SoundControl;
+import org.orecruncher.sndctrl.api.sound.ISoundCategory;
+import org.orecruncher.sndctrl.config.Config;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+
+/**
+ * Selects the TraceDetail for a sound based on its category, distance from the listener, and volume.  Thresholds
+ * are configured per category with entries of the form "category near mid", where near and mid are distances in
+ * blocks.  Sounds within near get FULL detail, within mid REDUCED, and beyond that MINIMAL.
+ */
+@Mod.EventBusSubscriber(modid = SoundControl.MOD_ID, value = Dist.CLIENT, bus = Mod.EventBusSubscriber.Bus.MOD)
+public final class TraceDetailTiers {
+
+    private static final IModLog LOGGER = SoundControl.LOGGER.createChild(TraceDetailTiers.class);
+    private static final String DELIMITER = " ";
+
+    // Used for categories that do not have an entry in the config
+    private static final Tier DEFAULT_TIER = new Tier(16, 32);
+    // Sounds played below this volume are hard to hear so the extra detail is wasted
+    private static final float QUIET_VOLUME = 0.2F;
+
+    // Replaced as a whole when the config changes since the sound processing threads read it
+    private static volatile Map<String, Tier> tiers = new Object2ObjectOpenHashMap<>();
+
+    private TraceDetailTiers() {
+    }
+
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public static void onConfigLoad(@Nonnull final ModConfig.Loading configEvent) {
+        applyConfig();
+    }
+
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public static void onConfigChange(@Nonnull final ModConfig.Reloading configEvent) {
+        applyConfig();
+    }
+
+    public static void applyConfig() {
+        final Map<String, Tier> result = new Object2ObjectOpenHashMap<>();
+        for (final String entry : Config.CLIENT.sound.traceDetailTiers.get()) {
+            final String[] parts = entry.trim().split(DELIMITER);
+            try {
+                if (parts.length != 3)
+                    throw new IllegalArgumentException("Expected 3 tokens");
+                final int near = Integer.parseInt(parts[1]);
+                final int mid = Integer.parseInt(parts[2]);
+                if (near < 0 || mid < near)
+                    throw new IllegalArgumentException("Distances out of order");
+                result.put(parts[0], new Tier(near, mid));
+            } catch (@Nonnull final Throwable t) {
+                LOGGER.warn("Invalid trace detail entry '%s': %s", entry, t.getMessage());
+            }
+        }
+        tiers = result;
+    }
+
+    /**
+     * Determines the level of detail to use when tracing a sound.
+     *
+     * @param category   Category of the sound
+     * @param distanceSq Squared distance between the sound and the listener
+     * @param volume     Volume at which the sound is played
+     * @return The level of detail to use
+     */
+    @Nonnull
+    public static TraceDetail select(@Nonnull final ISoundCategory category, final double distanceSq, final float volume) {
+        if (volume < QUIET_VOLUME)
+            return TraceDetail.MINIMAL;
+        final Tier tier = tiers.getOrDefault(category.getName(), DEFAULT_TIER);
+        if (distanceSq <= tier.nearSq)
+            return TraceDetail.FULL;
+        if (distanceSq <= tier.midSq)
+            return TraceDetail.REDUCED;
+        return TraceDetail.MINIMAL;
+    }
+
+    private static final class Tier {
+        final double nearSq;
+        final double midSq;
+
+        Tier(final int near, final int mid) {
+            this.nearSq = (double) near * near;
+            this.midSq = (double) mid * mid;
+        }
+    }
+}
@@ -18,13 +18,12 @@
 
 package org.orecruncher.sndctrl.audio.handlers;
 
-import net.minecraft.client.Minecraft;
 import net.minecraft.world.entity.player.Player;
-import net.minecraft.world.level.material.Fluid;
+import net.minecraft.world.level.material.FluidState;
+import net.minecraft.world.level.material.Fluids;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.phys.Vec3;
-import net.minecraft.world.level.LevelReader;
 import net.minecraft.world.level.Level;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
@@ -32,91 +31,164 @@ import org.orecruncher.lib.GameUtils;
 import org.orecruncher.lib.WorldUtils;
 import org.orecruncher.sndctrl.library.AudioEffectLibrary;
 
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Snapshot of the listener and the world around them taken on the client thread each tick.  The sound processing
+ * threads only work from the snapshot, never the live world or player.  Contexts are recycled by the sound
+ * processor rather than allocated each tick, so the fields are written by update() and must be treated as read only
+ * everywhere else.  A thread that needs a context has to retain it while in use so it is not recycled from under it.
+ */
 @OnlyIn(Dist.CLIENT)
 public final class WorldContext {
 
-    /**
-     * Quick Minecraft reference
-     */
-    public final Minecraft mc;
-    /**
-     * Reference to the client side PlayerEntity
-     */
-    public final Player player;
-    /**
-     * Reference to the player's world
-     */
-    public final LevelReader world;
+    private final BlockPos.MutableBlockPos playerBlockPos = new BlockPos.MutableBlockPos();
+    private final BlockPos.MutableBlockPos playerEyeBlockPos = new BlockPos.MutableBlockPos();
+    private final PrecipitationMap precipitation = new PrecipitationMap();
+    private final AtomicInteger holds = new AtomicInteger();
+
     /**
      * Position of the player.
      */
-    public final Vec3 playerPosition;
+    public Vec3 playerPosition = Vec3.ZERO;
     /**
      * Position of the player's eyes.
      */
-    public final Vec3 playerEyePosition;
+    public Vec3 playerEyePosition = Vec3.ZERO;
     /**
      * Block position of the player.
      */
-    public final BlockPos playerPos;
+    public final BlockPos playerPos = this.playerBlockPos;
     /**
      * Block position of the player's eyes.
      */
-    public final BlockPos playerEyePos;
+    public final BlockPos playerEyePos = this.playerEyeBlockPos;
     /**
      * Flag indicating if it is precipitating
      */
-    public final boolean isPrecipitating;
+    public boolean isPrecipitating;
     /**
      * Current strength of precipitation.
      */
-    public final float precipitationStrength;
+    public float precipitationStrength;
+    /**
+     * Fluid the player's eyes are in.
+     */
+    public FluidState eyeFluid = Fluids.EMPTY.defaultFluidState();
     /**
      * Coefficient used for dampening sound.  Usually caused by the player's head being in lava or water.
      */
-    public final float auralDampening;
+    public float auralDampening;
+    /**
+     * Flag indicating if the player is in water.
+     */
+    public boolean isInWater;
+    /**
+     * Snapshot of the blocks around the player's eyes.  Used for ray tracing from the sound processing threads.
+     */
+    public AcousticSnapshot snapshot = AcousticSnapshot.EMPTY;
+
+    private boolean isValid;
 
     public WorldContext() {
+    }
+
+    /**
+     * Creates a context for tracing against a snapshot outside of the game, such as for benchmarks.  There is no
+     * player or world so there is no weather.
+     *
+     * @param snapshot          Snapshot of the blocks around the listener
+     * @param playerEyePosition Position of the listener
+     * @param auralDampening    Dampening caused by the fluid the listener's head is in
+     * @param isInWater         Whether the listener is in water
+     */
+    WorldContext(@Nonnull final AcousticSnapshot snapshot, @Nonnull final Vec3 playerEyePosition, final float auralDampening, final boolean isInWater) {
+        this.playerPosition = playerEyePosition;
+        this.playerEyePosition = playerEyePosition;
+        this.playerBlockPos.set(playerEyePosition.x, playerEyePosition.y, playerEyePosition.z);
+        this.playerEyeBlockPos.set(playerEyePosition.x, playerEyePosition.y, playerEyePosition.z);
+        this.auralDampening = auralDampening;
+        this.isInWater = isInWater;
+        this.snapshot = snapshot;
+        this.isValid = true;
+    }
+
+    /**
+     * Refreshes the context from the current state of the client.  Must be called from the client thread, and only
+     * on a context that is not in use.
+     *
+     * @param snapshotBuilder Builder used to capture the blocks around the listener
+     */
+    void update(@Nonnull final AcousticSnapshotBuilder snapshotBuilder) {
         if (GameUtils.isInGame()) {
             final Level w = GameUtils.getWorld();
-            this.world = w;
-            assert world != null;
-
-            this.player = GameUtils.getPlayer();
-            assert this.player != null;
+            assert w != null;
+            final Player player = GameUtils.getPlayer();
+            assert player != null;
 
             this.isPrecipitating = w.isRaining();
-            this.playerPosition = this.player.position();
-            this.playerEyePosition = this.player.getEyePosition(1F);
-            this.playerPos = new BlockPos(this.playerPosition);
-            this.playerEyePos = new BlockPos(this.playerEyePosition);
+            this.playerPosition = player.position();
+            this.playerEyePosition = player.getEyePosition(1F);
+            this.playerBlockPos.set(this.playerPosition.x, this.playerPosition.y, this.playerPosition.z);
+            this.playerEyeBlockPos.set(this.playerEyePosition.x, this.playerEyePosition.y, this.playerEyePosition.z);
 
-            final Fluid fs = this.player.level.getFluidState(this.playerEyePos).getType();
-            final ResourceLocation name = fs.getRegistryName();
+            this.eyeFluid = w.getFluidState(this.playerEyePos);
+            final ResourceLocation name = this.eyeFluid.getType().getRegistryName();
             if (name != null)
                 this.auralDampening = AudioEffectLibrary.getFluidCoeffcient(name);
             else
                 this.auralDampening = 0;
+            this.isInWater = player.isInWater();
 
             // Get our current rain strength.
             this.precipitationStrength = WorldUtils.getRainStrength(w, 1F);
-            this.mc = Minecraft.getInstance();
+            if (this.isPrecipitating)
+                this.precipitation.capture(w, this.playerPos);
+            else
+                this.precipitation.clear();
+            this.snapshot = snapshotBuilder.capture(w, this.playerEyePos);
+            this.isValid = true;
         } else {
-            this.mc = null;
-            this.player = null;
-            this.world = null;
             this.isPrecipitating = false;
             this.playerPosition = Vec3.ZERO;
             this.playerEyePosition = Vec3.ZERO;
-            this.playerPos = BlockPos.ZERO;
-            this.playerEyePos = BlockPos.ZERO;
+            this.playerBlockPos.set(0, 0, 0);
+            this.playerEyeBlockPos.set(0, 0, 0);
+            this.eyeFluid = Fluids.EMPTY.defaultFluidState();
             this.auralDampening = 0;
+            this.isInWater = false;
             this.precipitationStrength = 0F;
+            this.precipitation.clear();
+            this.snapshot = AcousticSnapshot.EMPTY;
+            this.isValid = false;
         }
     }
 
+    /**
+     * Precipitation falling around the listener.
+     */
+    @Nonnull
+    PrecipitationMap getPrecipitation() {
+        return this.precipitation;
+    }
+
     public boolean isNotValid() {
-        return this.mc == null;
+        return !this.isValid;
     }
 
+    /**
+     * Marks the context as in use so it will not be recycled.  Every call needs to be paired with release().
+     */
+    void retain() {
+        this.holds.incrementAndGet();
+    }
+
+    void release() {
+        this.holds.decrementAndGet();
+    }
+
+    boolean isInUse() {
+        return this.holds.get() > 0;
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020  OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.audio.handlers.effects;
+
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Triple buffer used to hand the effect parameters of a sound source from the thread calculating them to the sound
+ * engine thread applying them.  The writer fills the back buffer and publishes it by swapping it with the middle
+ * buffer.  The reader picks up a newly published buffer by swapping its front buffer with the middle.  Neither side
+ * ever waits on the other, and the reader always sees a complete set of parameters.
+ * <p>
+ * There can be only one writer and one reader at a time.
+ */
+@OnlyIn(Dist.CLIENT)
+public final class EffectParameterBuffer {
+
+    // Layout of the parameter array
+    public static final int ENABLED = 0;
+    public static final int SEND0_GAIN = 1;
+    public static final int SEND0_GAINHF = 2;
+    public static final int SEND1_GAIN = 3;
+    public static final int SEND1_GAINHF = 4;
+    public static final int SEND2_GAIN = 5;
+    public static final int SEND2_GAINHF = 6;
+    public static final int SEND3_GAIN = 7;
+    public static final int SEND3_GAINHF = 8;
+    public static final int DIRECT_GAIN = 9;
+    public static final int DIRECT_GAINHF = 10;
+    public static final int AIR_ABSORPTION = 11;
+    public static final int SIZE = 12;
+
+    // The middle index is tagged when it holds data the reader has not seen
+    private static final int INDEX_MASK = 0x3;
+    private static final int FRESH = 0x4;
+
+    private final float[][] buffers = new float[3][SIZE];
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;
+    private int front = 2;
+
+    /**
+     * Gets the buffer the writer fills in.  The content is whatever was in the buffer when it was last swapped out,
+     * so all parameters should be written.
+     */
+    @Nonnull
+    public float[] edit() {
+        return this.buffers[this.back];
+    }
+
+    /**
+     * Publishes the buffer obtained from edit() to the reader.
+     */
+    public void publish() {
+        this.back = this.middle.getAndSet(this.back | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Called by the reader to pick up the most recently published parameters, if any.
+     *
+     * @return true if the front buffer changed; false otherwise
+     */
+    public boolean acquire() {
+        if ((this.middle.get() & FRESH) == 0)
+            return false;
+        this.front = this.middle.getAndSet(this.front) & INDEX_MASK;
+        return true;
+    }
+
+    /**
+     * Gets the buffer the reader applies.  Only valid until the next call to acquire().
+     */
+    @Nonnull
+    public float[] front() {
+        return this.buffers[this.front];
+    }
+}
@@ -22,7 +22,6 @@ import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import org.lwjgl.openal.AL11;
 import org.orecruncher.lib.math.MathStuff;
-import org.orecruncher.sndctrl.audio.handlers.SoundFXProcessor;
 
 @OnlyIn(Dist.CLIENT)
 public final class SourcePropertyFloat {
@@ -60,7 +59,6 @@ public final class SourcePropertyFloat {
     public void apply(final int sourceId) {
         if (doProcess()) {
             AL11.alSourcef(sourceId, this.property, getValue());
-            SoundFXProcessor.validate("SourcePropertyFloat apply");
         }
     }
 }
\ No newline at end of file
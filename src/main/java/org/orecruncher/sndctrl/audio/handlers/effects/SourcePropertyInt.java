@@ -22,7 +22,6 @@ import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import org.lwjgl.openal.AL11;
 import org.orecruncher.lib.math.MathStuff;
-import org.orecruncher.sndctrl.audio.handlers.SoundFXProcessor;
 
 @SuppressWarnings("unused")
 @OnlyIn(Dist.CLIENT)
@@ -61,7 +60,6 @@ public final class SourcePropertyInt {
     public void apply(final int sourceId) {
         if (doProcess()) {
             AL11.alSourcei(sourceId, this.property, getValue());
-            SoundFXProcessor.validate("SourcePropertyInt apply");
         }
     }
 }
\ No newline at end of file
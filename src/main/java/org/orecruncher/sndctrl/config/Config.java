@@ -97,6 +97,30 @@ public final class Config {
                 .add("minecraft:ambient.underwater.exit")
                 .build();
 
+        public static final List<String> defaultTraceDetailTiers = ImmutableList.<String>builder()
+                .add("block 16 32")
+                .add("hostile 16 32")
+                .add("neutral 12 24")
+                .add("player 16 32")
+                .add("ambient 8 24")
+                .add("weather 8 16")
+                .add("record 16 32")
+                .add("voice 16 32")
+                .build();
+
+        public static final List<String> defaultVoiceLimits = ImmutableList.<String>builder()
+                .add("master 100 0")
+                .add("music 100 0")
+                .add("record 90 0")
+                .add("player 90 0")
+                .add("voice 90 0")
+                .add("hostile 80 0")
+                .add("neutral 50 48")
+                .add("block 40 96")
+                .add("weather 30 32")
+                .add("ambient 20 48")
+                .build();
+
         public final Sound sound;
         public final Logging logging;
         public final Effects effects;
@@ -113,13 +137,17 @@ public final class Config {
             public final BooleanValue enableHRTF;
             public final BooleanValue enableOcclusionCalcs;
             public final BooleanValue enableMonoConversion;
+            public final IntValue monoCacheSize;
             public final IntValue cullInterval;
+            public final IntValue coalesceWindow;
             public final IntValue backgroundThreadWorkers;
             public final IntValue streamingSoundCount;
             public final BooleanValue occludeWeather;
             public final BooleanValue occludeRecords;
             public final ConfigValue<List<? extends String>> individualSounds;
             public final ConfigValue<List<? extends String>> startupSoundList;
+            public final ConfigValue<List<? extends String>> traceDetailTiers;
+            public final ConfigValue<List<? extends String>> voiceLimits;
 
             Sound(@Nonnull final ForgeConfigSpec.Builder builder) {
                 builder.comment("General options for defining sound effects")
@@ -142,6 +170,11 @@ public final class Config {
                         .translation("sndctrl.cfg.sound.MonoConversion")
                         .define("Enable Stereo to Mono Conversion", true);
 
+                this.monoCacheSize = builder
+                        .comment("Memory, in megabytes, set aside for sounds that have been converted to mono (0 to disable)")
+                        .translation("sndctrl.cfg.sound.MonoCacheSize")
+                        .defineInRange("Mono Sound Cache Size", 32, 0, 1024);
+
                 this.enableOcclusionCalcs = builder
                         .comment("Enable sound occlusion calculations (sound muffling when positioned behind blocks)")
                         .translation("sndctrl.cfg.sound.Occlusion")
@@ -173,16 +206,31 @@ public final class Config {
                         .translation("sndctrl.cfg.sound.StartupSounds")
                         .defineList("Startup Sound List", defaultStartupSounds, s -> true);
 
+                this.traceDetailTiers = builder
+                        .comment("Distances, in blocks, at which sound effect detail is reduced for a category (category near mid)")
+                        .translation("sndctrl.cfg.sound.TraceDetail")
+                        .defineList("Sound Effect Detail Tiers", defaultTraceDetailTiers, s -> true);
+
+                this.voiceLimits = builder
+                        .comment("Priority and voice cap of a category when sounds compete for voices (category priority cap, cap of 0 is no cap)")
+                        .translation("sndctrl.cfg.sound.VoiceLimits")
+                        .defineList("Sound Voice Limits", defaultVoiceLimits, s -> true);
+
                 this.cullInterval = builder
                         .comment("Ticks between culled sound events (0 to disable culling)")
                         .translation("sndctrl.cfg.sound.CullInterval")
                         .defineInRange("Sound Culling Interval", 20, 0, 6000);
 
+                this.coalesceWindow = builder
+                        .comment("Ticks that identical nearby sounds are merged into the first one played (0 to disable)")
+                        .translation("sndctrl.cfg.sound.CoalesceWindow")
+                        .defineInRange("Sound Coalescing Window", 2, 0, 20);
+
                 this.backgroundThreadWorkers = builder
                         .worldRestart()
                         .comment("Number of background threads to handle sound effect calculations (0 is default)")
                         .translation("sndctrl.cfg.sound.Threads")
-                        .defineInRange("Background Workers", 0, 0, 8);
+                        .defineInRange("Background Workers", 0, 0, 16);
 
                 builder.pop();
             }
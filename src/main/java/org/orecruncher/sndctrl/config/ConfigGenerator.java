@@ -68,6 +68,11 @@ public class ConfigGenerator {
                         builder,
                         Config.CLIENT.sound.enableMonoConversion));
 
+        subCategory.add(
+                ClothAPIFactory.createIntegerSlider(
+                        builder,
+                        Config.CLIENT.sound.monoCacheSize));
+
         subCategory.add(
                 ClothAPIFactory.createIntegerSlider(
                         builder,
@@ -93,6 +98,11 @@ public class ConfigGenerator {
                         builder,
                         Config.CLIENT.sound.cullInterval));
 
+        subCategory.add(
+                ClothAPIFactory.createIntegerSlider(
+                        builder,
+                        Config.CLIENT.sound.coalesceWindow));
+
         subCategory.add(
                 ClothAPIFactory.createIntegerSlider(
                         builder,
@@ -114,6 +124,18 @@ public class ConfigGenerator {
                         Config.CLIENT.sound.startupSoundList,
                         null));
 
+        subCategory.add(
+                ClothAPIFactory.createStringList(
+                        builder,
+                        Config.CLIENT.sound.traceDetailTiers,
+                        null));
+
+        subCategory.add(
+                ClothAPIFactory.createStringList(
+                        builder,
+                        Config.CLIENT.sound.voiceLimits,
+                        null));
+
         modCategory.add(subCategory.build());
 
         subCategory = ClothAPIFactory.createSubCategory(entryBuilder, "sndctrl.cfg.effects", ChatFormatting.YELLOW, false);
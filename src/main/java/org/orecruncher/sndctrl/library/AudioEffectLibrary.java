@@ -69,11 +69,23 @@ public final class AudioEffectLibrary {
     // Lowpass Data
     private static final Object2FloatOpenHashMap<ResourceLocation> fluidCoefficient = new Object2FloatOpenHashMap<>();
 
+    // Bumped each time the configuration is (re)loaded so that consumers caching derived data can detect changes
+    private static int generation;
+
     public static void initialize() {
         // Currently does nothing.  Called during startup which triggers the class init.
         ModuleServiceManager.instance().add(new AudioEffectLibraryService());
     }
 
+    /**
+     * Gets the current configuration generation.  The value changes whenever the effect configuration is reloaded.
+     *
+     * @return The current configuration generation
+     */
+    public static int getGeneration() {
+        return generation;
+    }
+
     /**
      * Gets the occlusion value for the given BlockState.  This value determines how effective sound is transmitted
      * through the block.  Low values indicate more efficient transmission, and higher values indicate more absorption.
@@ -280,6 +292,8 @@ public final class AudioEffectLibrary {
                 // Lowpass filter gets applied when a player head is inside the block - think fluids.
                 processLowpass(cfg);
             });
+
+            generation++;
         }
 
         @Override
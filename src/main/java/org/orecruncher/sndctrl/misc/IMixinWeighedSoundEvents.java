@@ -0,0 +1,30 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020 OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.misc;
+
+import net.minecraft.client.resources.sounds.Sound;
+import net.minecraft.client.sounds.Weighted;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+public interface IMixinWeighedSoundEvents {
+    @Nonnull
+    List<Weighted<Sound>> getEntries();
+}
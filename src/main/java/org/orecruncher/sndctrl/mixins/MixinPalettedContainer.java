@@ -0,0 +1,53 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020 OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.mixins;
+
+import net.minecraft.util.BitStorage;
+import net.minecraft.world.level.chunk.Palette;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import org.orecruncher.sndctrl.misc.IMixinPalettedContainer;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Exposes the storage and palette of a PalettedContainer so that chunk sections can be copied in bulk.
+ */
+@Mixin(PalettedContainer.class)
+public class MixinPalettedContainer<T> implements IMixinPalettedContainer<T> {
+
+    @Shadow
+    protected BitStorage storage;
+
+    @Shadow
+    private Palette<T> palette;
+
+    @Nonnull
+    @Override
+    public BitStorage getStorage() {
+        return this.storage;
+    }
+
+    @Nonnull
+    @Override
+    public Palette<T> getPalette() {
+        return this.palette;
+    }
+}
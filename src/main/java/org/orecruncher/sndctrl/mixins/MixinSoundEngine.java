@@ -24,7 +24,9 @@ import net.minecraft.client.sounds.ChannelAccess;
 import net.minecraft.client.resources.sounds.SoundInstance;
 import net.minecraft.client.resources.sounds.TickableSoundInstance;
 import net.minecraft.client.resources.sounds.Sound;
+import net.minecraft.client.sounds.SoundBufferLibrary;
 import net.minecraft.client.sounds.SoundEngine;
+import net.minecraft.client.sounds.SoundEngineExecutor;
 import net.minecraft.client.sounds.WeighedSoundEvents;
 import com.mojang.blaze3d.audio.Channel;
 import com.mojang.blaze3d.audio.Library;
@@ -36,13 +38,16 @@ import org.orecruncher.sndctrl.api.sound.Category;
 import org.orecruncher.sndctrl.api.sound.ISoundInstance;
 import org.orecruncher.sndctrl.audio.AudioEngine;
 import org.orecruncher.sndctrl.audio.SoundUtils;
+import org.orecruncher.sndctrl.audio.VoiceBudget;
 import org.orecruncher.sndctrl.audio.handlers.SoundFXProcessor;
 import org.orecruncher.sndctrl.audio.handlers.SoundVolumeEvaluator;
+import org.orecruncher.sndctrl.misc.IMixinSoundEngine;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.Redirect;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 import org.spongepowered.asm.mixin.injection.callback.LocalCapture;
@@ -54,7 +59,7 @@ import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 @Mixin(SoundEngine.class)
-public class MixinSoundEngine {
+public class MixinSoundEngine implements IMixinSoundEngine {
 
     @Final
     @Shadow
@@ -79,6 +84,26 @@ public class MixinSoundEngine {
 
     @Shadow @Final private Multimap<SoundSource, SoundInstance> instanceBySource;
 
+    @Final
+    @Shadow
+    private SoundBufferLibrary soundBuffers;
+
+    @Final
+    @Shadow
+    private SoundEngineExecutor executor;
+
+    @Nonnull
+    @Override
+    public SoundBufferLibrary getSoundBuffers() {
+        return this.soundBuffers;
+    }
+
+    @Nonnull
+    @Override
+    public SoundEngineExecutor getExecutor() {
+        return this.executor;
+    }
+
     /**
      * Calculates the volume of sound based on the myriad of factors in the game as
      * well as configuration.
@@ -114,6 +139,23 @@ public class MixinSoundEngine {
         SoundUtils.deinitialize(this.library);
     }
 
+    /**
+     * Callback hook to get a voice for the sound before the engine creates a channel for it.  By this point the engine
+     * has resolved the sound and passed on it being silent, so it will play if it gets a voice.
+     *
+     * @param sound The sound that is being played
+     * @param ci    Used to cancel the play if there is no voice to be had
+     */
+    @Inject(method = "play(Lnet/minecraft/client/resources/sounds/SoundInstance;)V", at = @At(value = "INVOKE", target = "Lnet/minecraft/client/sounds/ChannelAccess;createHandle(Lcom/mojang/blaze3d/audio/Library$Pool;)Ljava/util/concurrent/CompletableFuture;"), cancellable = true)
+    private void onPlayAdmit(@Nonnull final SoundInstance sound, @Nonnull final CallbackInfo ci) {
+        try {
+            if (!VoiceBudget.admit(sound))
+                ci.cancel();
+        } catch(@Nonnull final Throwable t) {
+            SoundControl.LOGGER.error(t, "Error in onPlayAdmit()!");
+        }
+    }
+
     /**
      * Callback will trigger creation of sound context information for the sound play once it has been queued to the
      * sound engine.  It will also perform the first calculations of sound effects based on the player environment.
@@ -146,6 +188,52 @@ public class MixinSoundEngine {
         }
     }
 
+    /**
+     * Callback hook for when the engine pops a sound off of the delayed queue and plays it.  This is the only call
+     * to play() made while ticking.
+     *
+     * @param engine The sound engine
+     * @param sound  The sound that was delayed
+     */
+    @Redirect(method = "tickNonPaused", at = @At(value = "INVOKE", target = "Lnet/minecraft/client/sounds/SoundEngine;play(Lnet/minecraft/client/resources/sounds/SoundInstance;)V"))
+    private void onPlayDelayed(@Nonnull final SoundEngine engine, @Nonnull final SoundInstance sound) {
+        engine.play(sound);
+        try {
+            AudioEngine.onPlayDelayedSound(sound);
+        } catch(@Nonnull final Throwable t) {
+            SoundControl.LOGGER.error(t, "Error in onPlayDelayed()!");
+        }
+    }
+
+    /**
+     * Callback hook for when the engine releases a sound after its channel has stopped.  The release of the sound
+     * from the category list only happens on this path.
+     *
+     * @param multimap The sounds by category
+     * @param category The category of the sound
+     * @param sound    The sound being released
+     * @return Result of the removal
+     */
+    @Redirect(method = "tickNonPaused", at = @At(value = "INVOKE", target = "Lcom/google/common/collect/Multimap;remove(Ljava/lang/Object;Ljava/lang/Object;)Z"))
+    private boolean onSoundStopped(@Nonnull final Multimap<SoundSource, SoundInstance> multimap, final Object category, final Object sound) {
+        try {
+            AudioEngine.onStopSound((SoundInstance) sound);
+        } catch(@Nonnull final Throwable t) {
+            SoundControl.LOGGER.error(t, "Error in onSoundStopped()!");
+        }
+        return multimap.remove(category, sound);
+    }
+
+    /**
+     * Callback hook for when the engine stops all sounds and clears its lists.
+     *
+     * @param ci Ignored
+     */
+    @Inject(method = "stopAll()V", at = @At("HEAD"))
+    public void onStopAll(@Nonnull final CallbackInfo ci) {
+        AudioEngine.onStopAllSounds();
+    }
+
     /**
      * Need to tick and handle sounds that are tagged with CONFIG category even if the game is paused.
      *
@@ -171,8 +259,10 @@ public class MixinSoundEngine {
                 if (f2 <= 0.0F) {
                     channelmanager$entry1.execute(Channel::stop);
                     iterator.remove();
+                    AudioEngine.onStopSound(instance);
                 } else if (channelmanager$entry1.isStopped()) {
                     iterator.remove();
+                    AudioEngine.onStopSound(instance);
                     this.soundDeleteTime.remove(instance);
 
                     try {
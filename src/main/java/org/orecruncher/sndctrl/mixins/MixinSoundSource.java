@@ -20,6 +20,7 @@ package org.orecruncher.sndctrl.mixins;
 
 import com.mojang.blaze3d.audio.SoundBuffer;
 import com.mojang.blaze3d.audio.Channel;
+import net.minecraft.client.sounds.AudioStream;
 import org.lwjgl.openal.AL10;
 import org.orecruncher.sndctrl.SoundControl;
 import org.orecruncher.sndctrl.audio.handlers.SoundFXProcessor;
@@ -30,6 +31,7 @@ import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.ModifyVariable;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import javax.annotation.Nonnull;
@@ -119,4 +121,20 @@ public class MixinSoundSource implements IMixinSoundContext {
             SoundControl.LOGGER.error(t, "Error in onPlayBuffer()!");
         }
     }
+
+    /**
+     * Called when a streaming sound is attached to the source.  Like static buffers, non-mono streams with attenuation
+     * are converted to mono format, though the conversion happens as the stream is read.
+     * @param stream Stream to convert to mono if needed.
+     * @return The stream the source is to play
+     */
+    @ModifyVariable(method = "attachBufferStream", at = @At("HEAD"), argsOnly = true)
+    public AudioStream onPlayStream(AudioStream stream) {
+        try {
+            return SoundFXProcessor.playStream((Channel) ((Object) this), stream);
+        } catch(@Nonnull final Throwable t) {
+            SoundControl.LOGGER.error(t, "Error in onPlayStream()!");
+        }
+        return stream;
+    }
 }
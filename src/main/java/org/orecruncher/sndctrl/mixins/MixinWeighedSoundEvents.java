@@ -0,0 +1,44 @@
+/*
+ * Dynamic Surroundings
+ * Copyright (C) 2020 OreCruncher
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>
+ */
+
+package org.orecruncher.sndctrl.mixins;
+
+import net.minecraft.client.resources.sounds.Sound;
+import net.minecraft.client.sounds.WeighedSoundEvents;
+import net.minecraft.client.sounds.Weighted;
+import org.orecruncher.sndctrl.misc.IMixinWeighedSoundEvents;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+
+import javax.annotation.Nonnull;
+import java.util.List;
+
+@Mixin(WeighedSoundEvents.class)
+public class MixinWeighedSoundEvents implements IMixinWeighedSoundEvents {
+
+    @Final
+    @Shadow
+    private List<Weighted<Sound>> list;
+
+    @Nonnull
+    @Override
+    public List<Weighted<Sound>> getEntries() {
+        return this.list;
+    }
+}